@@ -0,0 +1,82 @@
+package com.wileyedge.flooring.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wileyedge.flooring.dao.Dao;
+import com.wileyedge.flooring.model.Order;
+
+/// Loading, saving and exporting a synthetic order folder
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoBenchmark {
+
+	@Param({ "30", "365" })
+	public int days;
+
+	@Param({ "10", "200" })
+	public int ordersPerDay;
+
+	private File root;
+	private Dao dao;
+	private Map<LocalDate, List<Order>> orders;
+	private LocalDate busiestDate;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		root = Files.createTempDirectory("flooring-bench").toFile();
+		orders = OrderData.orders(days, ordersPerDay, 42);
+		dao = OrderData.writeFolder(root, orders);
+		// the date with the most orders, the earliest of equals
+		busiestDate = orders.entrySet().stream()
+				.max(Comparator.comparingInt((Map.Entry<LocalDate, List<Order>> e) -> e.getValue().size())
+						.thenComparing(Map.Entry::getKey, Comparator.reverseOrder()))
+				.get().getKey();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		OrderData.delete(root);
+	}
+
+	@Benchmark
+	public Map<LocalDate, List<Order>> getOrders() {
+		return dao.getOrders();
+	}
+
+	// rewrites one whole day, what editOrder and removeOrder cost
+	@Benchmark
+	public boolean saveChanges() {
+		return dao.saveChanges(busiestDate, orders.get(busiestDate));
+	}
+
+	@Benchmark
+	public boolean exportOrders() {
+		return dao.exportOrders(orders);
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.wileyedge.flooring.benchmark;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import com.wileyedge.flooring.dao.Dao;
+import com.wileyedge.flooring.model.Order;
+
+/// Measures the heap held by the loaded orders with and without sharing the
+/// repeated fields
+///
+/// arguments are an order folder, products file and taxes file, the
+/// production data for example, with none a synthetic year is generated
+public class HeapReport {
+
+	public static void main(String[] args) throws Exception {
+		File root = null;
+		String[] files = args;
+		if (files.length < 3) {
+			root = Files.createTempDirectory("heap-report").toFile();
+			OrderData.writeFolder(root, OrderData.orders(365, 200, 42));
+			files = new String[] { new File(root, "Orders").getPath(), new File(root, "Data/Products.txt").getPath(),
+					new File(root, "Data/Taxes.txt").getPath() };
+		}
+
+		try {
+			long plain = retained(files, false, null);
+			Dao dao = dao(files, false);
+			long shared = retained(files, true, dao);
+
+			System.out.println("Orders held without sharing: " + plain / 1024 + " KB");
+			System.out.println("Orders held with sharing:    " + shared / 1024 + " KB");
+			System.out.println("Measured saving:             " + (plain - shared) / 1024 + " KB");
+			System.out.println("Values shared:               " + dao.getFieldDictionary().getDuplicates());
+			System.out.println("Estimated saving:            " + dao.getFieldDictionary().getBytesSaved() / 1024
+					+ " KB");
+		} finally {
+			if (root != null) {
+				OrderData.delete(root);
+			}
+		}
+	}
+
+	// heap still used once the orders are loaded and garbage is collected
+	private static long retained(String[] files, boolean interning, Dao dao) {
+		if (dao == null) {
+			dao = dao(files, interning);
+		}
+		dao.setInterning(interning);
+		long before = usedAfterGc();
+		// taxes and products first so they seed the dictionary
+		dao.getTaxInfo();
+		dao.getProducts();
+		Map<LocalDate, List<Order>> orders = dao.getOrders();
+		long after = usedAfterGc();
+		System.out.println("Loaded " + orders.values().stream().mapToInt(List::size).sum() + " orders, interning "
+				+ (interning ? "on" : "off"));
+		return after - before;
+	}
+
+	private static Dao dao(String[] files, boolean interning) {
+		Dao dao = new Dao();
+		dao.setTestFiles(files[0], files[1], files[2], new File(files[0], "DataExport.txt").getPath());
+		dao.setJournalling(false);
+		dao.setSnapshots(false);
+		dao.setInterning(interning);
+		return dao;
+	}
+
+	private static long usedAfterGc() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+}
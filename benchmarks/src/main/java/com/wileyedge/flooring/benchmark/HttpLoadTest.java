@@ -0,0 +1,149 @@
+package com.wileyedge.flooring.benchmark;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.wileyedge.flooring.controller.HttpController;
+import com.wileyedge.flooring.dao.Dao;
+import com.wileyedge.flooring.service.Service;
+
+/// Drives the HTTP front end from many concurrent clients on this machine
+/// and prints the throughput and latency
+///
+/// arguments are the number of clients and seconds to run, 64 and 10 by
+/// default. Each client sends a mix of 70% reads (by date and by number),
+/// 20% quotes and 10% new orders against a generated month of orders
+public class HttpLoadTest {
+
+	private static final int DAYS = 30;
+	private static final int ORDERS_PER_DAY = 50;
+
+	public static void main(String[] args) throws Exception {
+		int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		File root = Files.createTempDirectory("http-load").toFile();
+		HttpController controller = null;
+		Service service = null;
+		ExecutorService pool = Executors.newFixedThreadPool(clients);
+		try {
+			Dao dao = OrderData.writeFolder(root, OrderData.orders(DAYS, ORDERS_PER_DAY, 42));
+			dao.setJournalling(true);
+			service = new Service(dao);
+			// as the server runs by default each change is saved as it is made,
+			// -Dflooring.writeBehindMillis saves them in the background instead
+			long writeBehind = Long.getLong("flooring.writeBehindMillis", 0);
+			if (writeBehind > 0) {
+				service.setWriteBehind(writeBehind, 10000);
+			}
+			service.initialise();
+			controller = new HttpController(service);
+			controller.start(0);
+
+			String base = "http://localhost:" + controller.getPort();
+			HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+			long end = System.nanoTime() + seconds * 1_000_000_000L;
+
+			List<Future<long[]>> results = new ArrayList<>();
+			for (int c = 0; c < clients; c++) {
+				long seed = c;
+				results.add(pool.submit(() -> run(client, base, new Random(seed), end)));
+			}
+
+			long[] all = new long[0];
+			int errors = 0;
+			for (Future<long[]> f : results) {
+				long[] latencies = f.get();
+				// the last slot is the error count
+				errors += latencies[latencies.length - 1];
+				int n = all.length;
+				all = Arrays.copyOf(all, n + latencies.length - 1);
+				System.arraycopy(latencies, 0, all, n, latencies.length - 1);
+			}
+			Arrays.sort(all);
+
+			System.out.println("Clients:     " + clients + (controller.isVirtualThreads() ? ", server on virtual threads"
+					: ", server on a thread pool"));
+			System.out.println("Requests:    " + all.length + " in " + seconds + " s, " + errors + " failed");
+			System.out.println("Throughput:  " + all.length / seconds + " requests/s");
+			System.out.println("Latency p50: " + percentile(all, 50) / 1000 + " us");
+			System.out.println("Latency p99: " + percentile(all, 99) / 1000 + " us");
+		} finally {
+			pool.shutdownNow();
+			if (controller != null) {
+				controller.stop();
+			}
+			// saves anything still waiting and stops the background writer
+			if (service != null) {
+				service.shutdown();
+			}
+			OrderData.delete(root);
+		}
+		// the journal keeps a background thread
+		System.exit(0);
+	}
+
+	// sends requests until the deadline, returns each latency in nanoseconds
+	// followed by the number of failed requests
+	private static long[] run(HttpClient client, String base, Random random, long end) throws Exception {
+		long[] latencies = new long[1024];
+		int count = 0;
+		int errors = 0;
+		LocalDate first = LocalDate.of(2020, 1, 1);
+
+		while (System.nanoTime() < end) {
+			int pick = random.nextInt(10);
+			HttpRequest request;
+			if (pick < 4) {
+				LocalDate date = first.plusDays(random.nextInt(DAYS));
+				request = HttpRequest.newBuilder(URI.create(base + "/orders?date=" + date)).GET().build();
+			} else if (pick < 7) {
+				int orderNumber = 1 + random.nextInt(DAYS * ORDERS_PER_DAY);
+				request = HttpRequest.newBuilder(URI.create(base + "/orders/" + orderNumber)).GET().build();
+			} else {
+				String body = "{\"orderDate\":\"" + LocalDate.of(2099, 1, 1).plusDays(random.nextInt(DAYS))
+						+ "\",\"customerName\":\"Load " + random.nextInt(1000) + "\",\"state\":\""
+						+ OrderData.STATES[random.nextInt(OrderData.STATES.length)] + "\",\"productType\":\""
+						+ OrderData.PRODUCTS[random.nextInt(OrderData.PRODUCTS.length)].getProductType()
+						+ "\",\"area\":" + (100 + random.nextInt(900)) + "}";
+				request = HttpRequest.newBuilder(URI.create(base + (pick < 9 ? "/quote" : "/orders")))
+						.POST(HttpRequest.BodyPublishers.ofString(body)).build();
+			}
+
+			long start = System.nanoTime();
+			HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+			long took = System.nanoTime() - start;
+			if (response.statusCode() >= 300) {
+				errors++;
+			}
+			if (count == latencies.length) {
+				latencies = Arrays.copyOf(latencies, count * 2);
+			}
+			latencies[count++] = took;
+		}
+
+		long[] result = Arrays.copyOf(latencies, count + 1);
+		result[count] = errors;
+		return result;
+	}
+
+	private static long percentile(long[] sorted, int percent) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		return sorted[Math.min(sorted.length - 1, (int) ((long) sorted.length * percent / 100))];
+	}
+
+}
@@ -0,0 +1,59 @@
+package com.wileyedge.flooring.benchmark;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.wileyedge.flooring.model.Order;
+
+/// Pricing and formatting a batch of orders
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderBenchmark {
+
+	private static final int BATCH = 1024;
+
+	private Order[] orders;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		orders = new Order[BATCH];
+		for (int i = 0; i < BATCH; i++) {
+			orders[i] = OrderData.order(random, LocalDate.of(2020, 1, 1), i + 1);
+		}
+	}
+
+	@Benchmark
+	public void updateDetails(Blackhole bh) {
+		for (Order o : orders) {
+			o.updateDetails();
+			bh.consume(o);
+		}
+	}
+
+	@Benchmark
+	public void formatOrder(Blackhole bh) {
+		for (Order o : orders) {
+			bh.consume(o.formatOrder());
+		}
+	}
+
+}
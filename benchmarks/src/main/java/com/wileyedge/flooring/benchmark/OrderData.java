@@ -0,0 +1,110 @@
+package com.wileyedge.flooring.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import com.wileyedge.flooring.dao.Dao;
+import com.wileyedge.flooring.model.Order;
+import com.wileyedge.flooring.model.Product;
+
+/// Builds synthetic order folders for the benchmarks
+public class OrderData {
+
+	static final String[] STATES = { "TX", "WA", "KY", "CA", "NY" };
+	static final String[] STATE_NAMES = { "Texas", "Washington", "Kentucky", "Calfornia", "New York" };
+	static final String[] TAX_RATES = { "4.45", "9.25", "6.00", "25.00", "26.00" };
+
+	static final Product[] PRODUCTS = { new Product("Carpet", new BigDecimal("2.25"), new BigDecimal("2.10")),
+			new Product("Laminate", new BigDecimal("1.75"), new BigDecimal("2.10")),
+			new Product("Tile", new BigDecimal("3.50"), new BigDecimal("4.15")),
+			new Product("Wood", new BigDecimal("5.15"), new BigDecimal("4.75")) };
+
+	private OrderData() {
+	}
+
+	// builds the orders in memory, numbered 1 up in date order
+	public static Map<LocalDate, List<Order>> orders(int days, int ordersPerDay, long seed) {
+		Random random = new Random(seed);
+		Map<LocalDate, List<Order>> map = new TreeMap<>();
+		LocalDate start = LocalDate.of(2020, 1, 1);
+		int orderNumber = 1;
+
+		for (int d = 0; d < days; d++) {
+			LocalDate date = start.plusDays(d);
+			List<Order> orders = new ArrayList<>(ordersPerDay);
+			for (int i = 0; i < ordersPerDay; i++) {
+				orders.add(order(random, date, orderNumber++));
+			}
+			map.put(date, orders);
+		}
+		return map;
+	}
+
+	// a priced order with random customer, state, product and area
+	public static Order order(Random random, LocalDate date, int orderNumber) {
+		int state = random.nextInt(STATES.length);
+		Product product = PRODUCTS[random.nextInt(PRODUCTS.length)];
+		BigDecimal area = BigDecimal.valueOf(10000 + random.nextInt(90000), 2);
+
+		Order order = new Order(date, "Customer " + random.nextInt(100000), STATES[state], product.getProductType(),
+				area);
+		order.setOrderNumber(orderNumber);
+		order.setProductInfo(product);
+		order.setTaxRate(new BigDecimal(TAX_RATES[state]));
+		order.updateDetails();
+		return order;
+	}
+
+	// writes an order folder plus product and tax files under root
+	// returns a dao pointed at them with the journal and snapshot off
+	public static Dao writeFolder(File root, Map<LocalDate, List<Order>> orders) throws IOException {
+		File orderFolder = new File(root, "Orders");
+		File dataFolder = new File(root, "Data");
+		File backupFolder = new File(root, "Backup");
+		orderFolder.mkdirs();
+		dataFolder.mkdirs();
+		backupFolder.mkdirs();
+
+		StringBuilder products = new StringBuilder("ProductType,CostPerSquareFoot,LaborCostPerSquareFoot");
+		for (Product p : PRODUCTS) {
+			products.append("\r\n").append(p.getProductType()).append(',').append(p.getCostPerSquareFoot())
+					.append(',').append(p.getLabourCostPerSquareFoot());
+		}
+		Files.write(new File(dataFolder, "Products.txt").toPath(), products.toString().getBytes(StandardCharsets.UTF_8));
+
+		StringBuilder taxes = new StringBuilder("State,StateName,TaxRate");
+		for (int i = 0; i < STATES.length; i++) {
+			taxes.append("\r\n").append(STATES[i]).append(',').append(STATE_NAMES[i]).append(',').append(TAX_RATES[i]);
+		}
+		Files.write(new File(dataFolder, "Taxes.txt").toPath(), taxes.toString().getBytes(StandardCharsets.UTF_8));
+
+		Dao dao = new Dao();
+		dao.setTestFiles(orderFolder.getPath(), new File(dataFolder, "Products.txt").getPath(),
+				new File(dataFolder, "Taxes.txt").getPath(), new File(backupFolder, "DataExport.txt").getPath());
+		dao.setJournalling(false);
+		dao.setSnapshots(false);
+
+		orders.forEach(dao::saveChanges);
+		return dao;
+	}
+
+	// removes a folder written by writeFolder
+	public static void delete(File root) throws IOException {
+		if (root.isDirectory()) {
+			for (File f : root.listFiles()) {
+				delete(f);
+			}
+		}
+		Files.deleteIfExists(root.toPath());
+	}
+
+}
@@ -0,0 +1,242 @@
+package com.wileyedge.flooring.controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.wileyedge.flooring.exceptions.NoOrdersForDateException;
+import com.wileyedge.flooring.exceptions.OrderNotFoundException;
+import com.wileyedge.flooring.model.Order;
+import com.wileyedge.flooring.service.IService;
+import com.wileyedge.flooring.service.ImportResult;
+
+/// Runs a file of commands against the service without the menu, one
+/// command per line with comma separated fields and dates as 2099-01-31
+///
+///   add,2099-01-31,Ada Lovelace,TX,Carpet,150    add an order
+///   edit,2099-01-31,12,Ada King,,Tile,           change an order, empty fields are kept
+///   remove,2099-01-31,12                         remove an order
+///   get,2099-01-31                               print the orders for a date
+///   get,2099-01-31,12                            print one order
+///   export                                       export every order to the backup file
+///
+/// the name may hold commas, it is everything between the fields before it
+/// and the last three. Blank lines and lines starting with # are skipped
+///
+/// adds in a row are collected and added together so each date they touch
+/// is copied and written once, any other command adds them first so every
+/// command sees the ones before it
+public class BatchController {
+
+	// adds collected before they are added together
+	private static final int MAX_GROUP = 10000;
+
+	private final IService service;
+	private final PrintStream out;
+
+	private final Map<String, Integer> counts = new LinkedHashMap<>();
+	private final List<String> failures = new ArrayList<>();
+	private final List<Order> group = new ArrayList<>();
+	private final List<Integer> groupLines = new ArrayList<>();
+
+	/// Query results and failures are printed to out
+	public BatchController(IService service, PrintStream out) {
+		this.service = service;
+		this.out = out;
+	}
+
+	/// Runs every command in the file then waits for the changes to be
+	/// saved, a failed command is reported and the run goes on
+	public BatchReport run(Reader in) throws IOException {
+		long start = System.nanoTime();
+		try (BufferedReader reader = new BufferedReader(in)) {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (!line.isEmpty() && !line.startsWith("#")) {
+					run(lineNumber, line);
+				}
+			}
+		}
+		addGroup();
+		if (!service.flush()) {
+			fail(0, "Some changes could not be saved");
+		}
+
+		BatchReport report = new BatchReport(new LinkedHashMap<>(counts), new ArrayList<>(failures),
+				System.nanoTime() - start);
+		counts.clear();
+		failures.clear();
+		return report;
+	}
+
+	private void run(int lineNumber, String line) {
+		String[] fields = line.split(",", -1);
+		String command = fields[0].trim().toLowerCase();
+		counts.merge(command, 1, Integer::sum);
+		if (!command.equals("add")) {
+			addGroup();
+		}
+
+		try {
+			switch (command) {
+			case "add":
+				add(lineNumber, line);
+				break;
+			case "edit":
+				edit(lineNumber, line);
+				break;
+			case "remove":
+				expect(fields, 3);
+				LocalDate date = LocalDate.parse(fields[1].trim());
+				service.removeOrder(service.getOrderToDelete(date, orderNumber(fields[2])));
+				break;
+			case "get":
+				get(fields);
+				break;
+			case "export":
+				expect(fields, 1);
+				service.exportData();
+				break;
+			default:
+				fail(lineNumber, "Unknown command " + command);
+			}
+		} catch (OrderNotFoundException | NoOrdersForDateException | IllegalArgumentException e) {
+			fail(lineNumber, e.getMessage());
+		} catch (DateTimeParseException e) {
+			fail(lineNumber, "Dates must look like 2099-01-31");
+		}
+	}
+
+	private void add(int lineNumber, String line) {
+		String[] fields = nameInMiddle(line, 2);
+		Order order = new Order(LocalDate.parse(fields[1]), fields[2], fields[3], fields[4], decimal(fields[5]));
+		List<String> problems = service.checkOrder(order);
+		if (!problems.isEmpty()) {
+			fail(lineNumber, String.join(", ", problems));
+			return;
+		}
+		group.add(order);
+		groupLines.add(lineNumber);
+		if (group.size() >= MAX_GROUP) {
+			addGroup();
+		}
+	}
+
+	// adds the collected orders, each date once
+	private void addGroup() {
+		if (group.isEmpty()) {
+			return;
+		}
+		ImportResult result = service.importOrders(new ArrayList<>(group));
+		if (result.getRejected() > 0) {
+			// already checked, only a change in the tax or product files gets here
+			fail(groupLines.get(0), result.getRejected() + " of the orders from here on could not be added, "
+					+ result.getErrors());
+		}
+		group.clear();
+		groupLines.clear();
+	}
+
+	private void edit(int lineNumber, String line) throws OrderNotFoundException {
+		String[] fields = nameInMiddle(line, 3);
+		LocalDate date = LocalDate.parse(fields[1]);
+		Order order = service.getOrder(date, orderNumber(fields[2]));
+		String name = orDefault(fields[3], order.getCustomerName());
+		String state = orDefault(fields[4], order.getState());
+		String productType = orDefault(fields[5], order.getProductType());
+		BigDecimal area = fields[6].isEmpty() ? order.getArea() : decimal(fields[6]);
+
+		List<String> problems = service.reviseOrder(order, name, state, productType, area);
+		if (!problems.isEmpty()) {
+			fail(lineNumber, String.join(", ", problems));
+			return;
+		}
+		service.editOrder(order);
+	}
+
+	// get,<date> lists the date's orders, get,<date>,<number> shows one
+	private void get(String[] fields) throws OrderNotFoundException, NoOrdersForDateException {
+		if (fields.length != 2 && fields.length != 3) {
+			throw new IllegalArgumentException("Expected 2 or 3 fields");
+		}
+		LocalDate date = LocalDate.parse(fields[1].trim());
+		if (fields.length == 3) {
+			out.println(service.getOrder(date, orderNumber(fields[2])).formatOrder());
+			return;
+		}
+		service.checkOrderDateExists(date);
+		for (Order o : service.getOrdersByDate(date)) {
+			out.println(o.formatOrder());
+		}
+	}
+
+	// splits a line whose name field comes after before fields and is
+	// followed by the last three, the name may hold commas
+	private static String[] nameInMiddle(String line, int before) {
+		String[] fields = new String[before + 4];
+		int from = 0;
+		for (int i = 0; i < before; i++) {
+			int comma = line.indexOf(',', from);
+			if (comma < 0) {
+				throw new IllegalArgumentException("Expected " + fields.length + " fields");
+			}
+			fields[i] = line.substring(from, comma).trim();
+			from = comma + 1;
+		}
+		int to = line.length();
+		for (int i = fields.length - 1; i > before; i--) {
+			int comma = line.lastIndexOf(',', to - 1);
+			if (comma < from) {
+				throw new IllegalArgumentException("Expected " + fields.length + " fields");
+			}
+			fields[i] = line.substring(comma + 1, to).trim();
+			to = comma;
+		}
+		fields[before] = line.substring(from, to).trim();
+		return fields;
+	}
+
+	private void fail(int lineNumber, String message) {
+		String failure = lineNumber > 0 ? "Line " + lineNumber + ": " + message : message;
+		failures.add(failure);
+		out.println("  * " + failure);
+	}
+
+	private static void expect(String[] fields, int count) {
+		if (fields.length != count) {
+			throw new IllegalArgumentException("Expected " + count + " fields");
+		}
+	}
+
+	private static int orderNumber(String value) {
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Order number must be a whole number");
+		}
+	}
+
+	private static BigDecimal decimal(String value) {
+		try {
+			return new BigDecimal(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Area must be a number");
+		}
+	}
+
+	private static String orDefault(String value, String current) {
+		return value.isEmpty() ? current : value;
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.wileyedge.flooring.controller;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/// Outcome of a batch run, how many of each command ran, which failed and
+/// how long the run took including saving the changes
+public class BatchReport {
+
+	private final Map<String, Integer> counts;
+	private final List<String> failures;
+	private final long elapsedNanos;
+
+	BatchReport(Map<String, Integer> counts, List<String> failures, long elapsedNanos) {
+		this.counts = Collections.unmodifiableMap(counts);
+		this.failures = Collections.unmodifiableList(failures);
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	// commands run, failed ones included
+	public int getCommands() {
+		return counts.values().stream().mapToInt(Integer::intValue).sum();
+	}
+
+	/// Commands run by name in the order first seen
+	public Map<String, Integer> getCounts() {
+		return counts;
+	}
+
+	public int getFailed() {
+		return failures.size();
+	}
+
+	/// One message per failed command, prefixed with its line number
+	public List<String> getFailures() {
+		return failures;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedNanos / 1_000_000;
+	}
+
+	public long getCommandsPerSecond() {
+		return elapsedNanos == 0 ? 0 : getCommands() * 1_000_000_000L / elapsedNanos;
+	}
+
+	/// The summary printed at the end of a run
+	public String summary() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("  * ").append(getCommands()).append(" commands in ").append(getElapsedMillis()).append(" ms, ")
+				.append(getCommandsPerSecond()).append(" per second\n");
+		sb.append("  *");
+		counts.forEach((command, n) -> sb.append(' ').append(command).append(' ').append(n).append(','));
+		sb.setLength(sb.length() - (counts.isEmpty() ? 0 : 1));
+		sb.append('\n');
+		sb.append("  * ").append(failures.isEmpty() ? "No commands failed" : getFailed() + " failed");
+		return sb.toString();
+	}
+
+}
@@ -1,6 +1,10 @@
 package com.wileyedge.flooring.controller;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -22,15 +26,43 @@ import com.wileyedge.flooring.view.View;
 
 public class Controller {
 
+	// a batch saves each changed date once at the end unless it runs longer
+	// or fills the write queue first
+	private static final long BATCH_WRITE_BEHIND_MILLIS = 60_000;
+
 	public static void main(String[] args) {
 
+		// --batch <file> runs a command file instead of the menu
+		boolean batch = args.length > 0;
+		if (batch && (args.length != 2 || !args[0].equals("--batch"))) {
+			System.out.println("  * Usage: Controller [--batch <command file>]");
+			return;
+		}
+
 		ApplicationContext context = new ClassPathXmlApplicationContext("beans.xml");
 
 		IView view = context.getBean("view", View.class);
 		IService service = context.getBean("service", Service.class);
 
+		// -Dflooring.lazyLoading=true loads each order date the first time it is used
+		if (Boolean.getBoolean("flooring.lazyLoading")) {
+			((Service) service).setLazyLoading(true, Integer.getInteger("flooring.partitionCacheSize", 256));
+		}
+		// each change is saved before it is confirmed unless
+		// -Dflooring.writeBehindMillis saves them in the background instead
+		// a batch reports nothing until its changes are flushed at the end
+		long writeBehind = Long.getLong("flooring.writeBehindMillis", batch ? BATCH_WRITE_BEHIND_MILLIS : 0);
+		if (writeBehind > 0) {
+			((Service) service).setWriteBehind(writeBehind, Integer.getInteger("flooring.writeBehindQueue", 10000));
+		}
+
 		service.initialise();
 
+		if (batch) {
+			runBatch(service, args[1]);
+			return;
+		}
+
 		while (true) {
 			int input = view.printMenu();
 			switch (input) {
@@ -264,6 +296,10 @@ public class Controller {
 				break;
 
 			case 6:
+				// save anything still waiting on the background writer
+				if (!service.shutdown()) {
+					System.out.println("  * " + "Some changes could not be saved");
+				}
 				System.out.println("  * " + "Thank you. Goodbye!");
 				return;
 
@@ -275,4 +311,15 @@ public class Controller {
 
 	}
 
+	private static void runBatch(IService service, String file) {
+		try (Reader in = Files.newBufferedReader(Paths.get(file))) {
+			System.out.println(new BatchController(service, System.out).run(in).summary());
+		} catch (IOException e) {
+			System.out.println("  * Could not read " + file + ": " + e.getMessage());
+		}
+		if (!service.shutdown()) {
+			System.out.println("  * " + "Some changes could not be saved");
+		}
+	}
+
 }
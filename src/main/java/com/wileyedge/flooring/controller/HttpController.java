@@ -0,0 +1,362 @@
+package com.wileyedge.flooring.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.wileyedge.flooring.exceptions.NoOrdersForDateException;
+import com.wileyedge.flooring.exceptions.OrderNotFoundException;
+import com.wileyedge.flooring.model.Order;
+import com.wileyedge.flooring.service.IService;
+import com.wileyedge.flooring.service.OrderQuery;
+import com.wileyedge.flooring.service.Service;
+
+/// Serves the order store over HTTP with JSON bodies so many counter
+/// terminals can share one store. Each request runs on its own virtual
+/// thread when the JDK has them (21 and later), otherwise on a fixed pool
+///
+///   GET    /orders?date=2099-01-31       the orders for a date
+///   GET    /orders?from=&to=&state=&productType=&limit=&cursor=
+///                                        a page of the orders in a date range,
+///                                        pass back "next" for the page after
+///   POST   /orders                       add an order
+///   GET    /orders/{number}[?date=]      one order
+///   PUT    /orders/{number}[?date=]      change the name, state, product or area
+///   DELETE /orders/{number}[?date=]      remove an order
+///   POST   /quote                        price an order without saving it
+///   POST   /export                       export every order to the backup file
+///
+/// an order body looks like {"orderDate":"2099-01-31","customerName":"Ada",
+/// "state":"TX","productType":"Carpet","area":150}, without a date the order
+/// is found from its number alone
+public class HttpController {
+
+	private static final int DEFAULT_PORT = 8080;
+	private static final String JSON = "application/json; charset=utf-8";
+	private static final int DEFAULT_PAGE_SIZE = 100;
+	private static final int MAX_PAGE_SIZE = 1000;
+
+	private final IService service;
+	private HttpServer server;
+	private ExecutorService executor;
+	private boolean virtualThreads;
+
+	public HttpController(IService service) {
+		this.service = service;
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		ApplicationContext context = new ClassPathXmlApplicationContext("beans.xml");
+		IService service = context.getBean("service", Service.class);
+
+		// -Dflooring.lazyLoading=true loads each order date the first time it is used
+		if (Boolean.getBoolean("flooring.lazyLoading")) {
+			((Service) service).setLazyLoading(true, Integer.getInteger("flooring.partitionCacheSize", 256));
+		}
+		// each change is saved before it is answered unless
+		// -Dflooring.writeBehindMillis saves them in the background instead
+		long writeBehind = Long.getLong("flooring.writeBehindMillis", 0);
+		if (writeBehind > 0) {
+			((Service) service).setWriteBehind(writeBehind, Integer.getInteger("flooring.writeBehindQueue", 10000));
+		}
+		service.initialise();
+
+		HttpController controller = new HttpController(service);
+		controller.start(Integer.getInteger("flooring.httpPort", DEFAULT_PORT));
+		// stop taking requests then save whatever is still waiting
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			controller.stop();
+			service.shutdown();
+		}));
+		System.out.println("  * Serving orders on port " + controller.getPort()
+				+ (controller.isVirtualThreads() ? " on virtual threads" : ""));
+	}
+
+	/// Starts serving, port 0 picks any free port
+	///
+	/// headers and body go out as separate writes, run with
+	/// -Dsun.net.httpserver.nodelay=true or each small response waits on the
+	/// client's delayed ack (about 40ms), the JDK reads it once per process
+	/// so it is left to the launcher
+	public void start(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(port), 0);
+		executor = newRequestExecutor();
+		server.setExecutor(executor);
+		server.createContext("/orders", ex -> handle(ex, this::orders));
+		server.createContext("/quote", ex -> handle(ex, this::quote));
+		server.createContext("/export", ex -> handle(ex, this::export));
+		server.start();
+	}
+
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdown();
+			server = null;
+		}
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	// a virtual thread per request where the JDK has them, looked up at run
+	// time so the build can still target 11
+	private ExecutorService newRequestExecutor() {
+		try {
+			Method perTask = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			ExecutorService virtual = (ExecutorService) perTask.invoke(null);
+			virtualThreads = true;
+			return virtual;
+		} catch (ReflectiveOperationException e) {
+			virtualThreads = false;
+			return Executors.newFixedThreadPool(Math.max(16, Runtime.getRuntime().availableProcessors() * 4));
+		}
+	}
+
+	/// What a request sends back, a status and a JSON body (null for none)
+	private static class Response {
+		private final int status;
+		private final String body;
+		private String location;
+
+		private Response(int status, String body) {
+			this.status = status;
+			this.body = body;
+		}
+	}
+
+	private interface Route {
+		Response serve(HttpExchange ex) throws Exception;
+	}
+
+	// runs a route and turns its exceptions into error responses
+	private void handle(HttpExchange ex, Route route) throws IOException {
+		Response response;
+		try {
+			response = route.serve(ex);
+		} catch (OrderNotFoundException | NoOrdersForDateException e) {
+			response = error(404, e.getMessage());
+		} catch (IllegalArgumentException | DateTimeParseException e) {
+			response = error(400, e.getMessage());
+		} catch (Exception e) {
+			e.printStackTrace();
+			response = error(500, "Could not complete the request");
+		}
+
+		try {
+			if (response.location != null) {
+				ex.getResponseHeaders().set("Location", response.location);
+			}
+			if (response.body == null) {
+				ex.sendResponseHeaders(response.status, -1);
+			} else {
+				byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+				ex.getResponseHeaders().set("Content-Type", JSON);
+				ex.sendResponseHeaders(response.status, bytes.length);
+				try (OutputStream out = ex.getResponseBody()) {
+					out.write(bytes);
+				}
+			}
+		} finally {
+			ex.close();
+		}
+	}
+
+	private Response orders(HttpExchange ex) throws Exception {
+		String method = ex.getRequestMethod();
+		String rest = ex.getRequestURI().getPath().substring("/orders".length());
+		Map<String, String> query = query(ex);
+
+		if (rest.isEmpty() || rest.equals("/")) {
+			switch (method) {
+			case "GET":
+				if (!query.containsKey("date")) {
+					return page(query);
+				}
+				LocalDate date = LocalDate.parse(query.get("date"));
+				service.checkOrderDateExists(date);
+				return new Response(200, OrderJson.orders(service.getOrdersByDate(date)));
+			case "POST":
+				return addOrder(OrderJson.parseObject(body(ex)));
+			default:
+				return notAllowed(ex, "GET, POST");
+			}
+		}
+
+		int orderNumber;
+		try {
+			if (!rest.startsWith("/")) {
+				throw new NumberFormatException();
+			}
+			orderNumber = Integer.parseInt(rest.substring(1));
+		} catch (NumberFormatException e) {
+			return error(404, "There is no order with that order number");
+		}
+		LocalDate date = query.containsKey("date") ? LocalDate.parse(query.get("date"))
+				: service.getOrder(orderNumber).getOrderDate();
+
+		switch (method) {
+		case "GET":
+			return new Response(200, OrderJson.order(service.getOrderToDelete(date, orderNumber)));
+		case "PUT":
+			return editOrder(date, orderNumber, OrderJson.parseObject(body(ex)));
+		case "DELETE":
+			service.removeOrder(service.getOrderToDelete(date, orderNumber));
+			return new Response(204, null);
+		default:
+			return notAllowed(ex, "GET, PUT, DELETE");
+		}
+	}
+
+	private Response page(Map<String, String> query) {
+		OrderQuery q = OrderQuery.between(date(query.get("from")), date(query.get("to")));
+		if (query.containsKey("state")) {
+			q = q.state(query.get("state"));
+		}
+		if (query.containsKey("productType")) {
+			q = q.productType(query.get("productType"));
+		}
+		int limit;
+		try {
+			limit = Integer.parseInt(query.getOrDefault("limit", String.valueOf(DEFAULT_PAGE_SIZE)));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Limit must be a whole number");
+		}
+		if (limit < 1 || limit > MAX_PAGE_SIZE) {
+			throw new IllegalArgumentException("Limit must be from 1 to " + MAX_PAGE_SIZE);
+		}
+		return new Response(200, OrderJson.page(service.getOrderPage(q, query.get("cursor"), limit)));
+	}
+
+	private static LocalDate date(String value) {
+		return value == null || value.isEmpty() ? null : LocalDate.parse(value);
+	}
+
+	private Response quote(HttpExchange ex) throws IOException {
+		if (!ex.getRequestMethod().equals("POST")) {
+			return notAllowed(ex, "POST");
+		}
+		Order order = newOrder(OrderJson.parseObject(body(ex)));
+		List<String> problems = service.checkOrder(order);
+		if (!problems.isEmpty()) {
+			return new Response(400, OrderJson.errors(problems));
+		}
+		return new Response(200, OrderJson.order(service.configureOrder(order)));
+	}
+
+	private Response export(HttpExchange ex) {
+		if (!ex.getRequestMethod().equals("POST")) {
+			return notAllowed(ex, "POST");
+		}
+		service.exportData();
+		return new Response(204, null);
+	}
+
+	private Response addOrder(Map<String, String> fields) {
+		Order order = newOrder(fields);
+		List<String> problems = service.checkOrder(order);
+		if (!problems.isEmpty()) {
+			return new Response(400, OrderJson.errors(problems));
+		}
+		service.configureOrder(order);
+		int orderNumber = service.addOrder(order);
+
+		Response response = new Response(201, OrderJson.order(order));
+		response.location = "/orders/" + orderNumber + "?date=" + order.getOrderDate();
+		return response;
+	}
+
+	// fields left out keep their current values, the date cant be changed
+	private Response editOrder(LocalDate date, int orderNumber, Map<String, String> fields)
+			throws OrderNotFoundException {
+		Order order = service.getOrder(date, orderNumber);
+		String name = fields.getOrDefault("customerName", order.getCustomerName());
+		String state = fields.getOrDefault("state", order.getState());
+		String productType = fields.getOrDefault("productType", order.getProductType());
+		BigDecimal area = fields.containsKey("area") ? decimal(fields.get("area")) : order.getArea();
+
+		List<String> problems = service.reviseOrder(order, name, state, productType, area);
+		if (!problems.isEmpty()) {
+			return new Response(400, OrderJson.errors(problems));
+		}
+		service.editOrder(order);
+		return new Response(200, OrderJson.order(order));
+	}
+
+	private static Order newOrder(Map<String, String> fields) {
+		LocalDate date = LocalDate.parse(required(fields, "orderDate"));
+		return new Order(date, fields.get("customerName"), fields.get("state"), fields.get("productType"),
+				decimal(required(fields, "area")));
+	}
+
+	private static BigDecimal decimal(String value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Area must be a number");
+		}
+		try {
+			return new BigDecimal(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Area must be a number");
+		}
+	}
+
+	private static String required(Map<String, String> fields, String name) {
+		String value = fields.get(name);
+		if (value == null) {
+			throw new IllegalArgumentException("Missing " + name);
+		}
+		return value;
+	}
+
+	private static String body(HttpExchange ex) throws IOException {
+		return new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+	}
+
+	private static Map<String, String> query(HttpExchange ex) {
+		Map<String, String> params = new HashMap<>();
+		String raw = ex.getRequestURI().getRawQuery();
+		if (raw == null || raw.isEmpty()) {
+			return params;
+		}
+		for (String pair : raw.split("&")) {
+			int eq = pair.indexOf('=');
+			String name = eq < 0 ? pair : pair.substring(0, eq);
+			String value = eq < 0 ? "" : pair.substring(eq + 1);
+			params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return params;
+	}
+
+	private static Response notAllowed(HttpExchange ex, String allowed) {
+		ex.getResponseHeaders().set("Allow", allowed);
+		return error(405, "Method not allowed");
+	}
+
+	private static Response error(int status, String message) {
+		return new Response(status, OrderJson.errors(Collections.singletonList(message)));
+	}
+
+}
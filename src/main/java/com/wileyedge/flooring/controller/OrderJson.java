@@ -0,0 +1,270 @@
+package com.wileyedge.flooring.controller;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.wileyedge.flooring.model.Order;
+import com.wileyedge.flooring.service.OrderPage;
+
+/// Just enough JSON for the HTTP front end. Orders are written as flat
+/// objects with numbers for the decimals, requests are read as one flat
+/// object whose values are kept as strings
+public class OrderJson {
+
+	private OrderJson() {
+	}
+
+	public static String order(Order o) {
+		StringBuilder sb = new StringBuilder(320);
+		writeOrder(sb, o);
+		return sb.toString();
+	}
+
+	public static String orders(List<Order> orders) {
+		StringBuilder sb = new StringBuilder(orders.size() * 320 + 2);
+		sb.append('[');
+		for (int i = 0; i < orders.size(); i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			writeOrder(sb, orders.get(i));
+		}
+		return sb.append(']').toString();
+	}
+
+	// {"orders":[...],"next":"cursor"}, next is null on the last page
+	public static String page(OrderPage page) {
+		List<Order> orders = page.getOrders();
+		StringBuilder sb = new StringBuilder(orders.size() * 320 + 40);
+		sb.append("{\"orders\":").append(orders(orders)).append(",\"next\":");
+		if (page.hasMore()) {
+			writeString(sb, page.getNextCursor());
+		} else {
+			sb.append("null");
+		}
+		return sb.append('}').toString();
+	}
+
+	public static String errors(List<String> messages) {
+		StringBuilder sb = new StringBuilder("{\"errors\":[");
+		for (int i = 0; i < messages.size(); i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			writeString(sb, messages.get(i));
+		}
+		return sb.append("]}").toString();
+	}
+
+	private static void writeOrder(StringBuilder sb, Order o) {
+		sb.append("{\"orderNumber\":").append(o.getOrderNumber());
+		sb.append(",\"orderDate\":");
+		writeString(sb, o.getOrderDate() == null ? null : o.getOrderDate().toString());
+		sb.append(",\"customerName\":");
+		writeString(sb, o.getCustomerName());
+		sb.append(",\"state\":");
+		writeString(sb, o.getState());
+		sb.append(",\"taxRate\":");
+		writeDecimal(sb, o.getTaxRate());
+		sb.append(",\"productType\":");
+		writeString(sb, o.getProductType());
+		sb.append(",\"area\":");
+		writeDecimal(sb, o.getArea());
+		sb.append(",\"costPerSquareFoot\":");
+		writeDecimal(sb, o.getCostPerSquareFoot());
+		sb.append(",\"labourCostPerSquareFoot\":");
+		writeDecimal(sb, o.getLabourCostPerSquareFoot());
+		sb.append(",\"materialCost\":");
+		writeDecimal(sb, o.getMaterialCost());
+		sb.append(",\"labourCost\":");
+		writeDecimal(sb, o.getLabourCost());
+		sb.append(",\"tax\":");
+		writeDecimal(sb, o.getTax());
+		sb.append(",\"total\":");
+		writeDecimal(sb, o.getTotal());
+		sb.append('}');
+	}
+
+	private static void writeDecimal(StringBuilder sb, BigDecimal value) {
+		sb.append(value == null ? "null" : value.toPlainString());
+	}
+
+	private static void writeString(StringBuilder sb, String value) {
+		if (value == null) {
+			sb.append("null");
+			return;
+		}
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		sb.append('"');
+	}
+
+	/// Reads one flat JSON object, strings, numbers, booleans and null, into
+	/// field name to value as written (null for JSON null)
+	/// throws IllegalArgumentException if the text is anything else
+	public static Map<String, String> parseObject(String json) {
+		Parser p = new Parser(json);
+		Map<String, String> fields = new LinkedHashMap<>();
+		p.skipSpace();
+		p.expect('{');
+		p.skipSpace();
+		if (!p.take('}')) {
+			do {
+				p.skipSpace();
+				String name = p.string();
+				p.skipSpace();
+				p.expect(':');
+				p.skipSpace();
+				fields.put(name, p.value());
+				p.skipSpace();
+			} while (p.take(','));
+			p.expect('}');
+		}
+		p.skipSpace();
+		if (!p.atEnd()) {
+			throw new IllegalArgumentException("Unexpected text after the object");
+		}
+		return fields;
+	}
+
+	private static class Parser {
+		private final String text;
+		private int pos = 0;
+
+		private Parser(String text) {
+			this.text = text;
+		}
+
+		private boolean atEnd() {
+			return pos >= text.length();
+		}
+
+		private void skipSpace() {
+			while (!atEnd() && Character.isWhitespace(text.charAt(pos))) {
+				pos++;
+			}
+		}
+
+		private boolean take(char c) {
+			if (!atEnd() && text.charAt(pos) == c) {
+				pos++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c) {
+			if (!take(c)) {
+				throw new IllegalArgumentException("Expected '" + c + "' at " + pos);
+			}
+		}
+
+		private String value() {
+			if (atEnd()) {
+				throw new IllegalArgumentException("Expected a value at " + pos);
+			}
+			char c = text.charAt(pos);
+			if (c == '"') {
+				return string();
+			}
+			int start = pos;
+			while (!atEnd() && "+-.0123456789eEtrufalsn".indexOf(text.charAt(pos)) >= 0) {
+				pos++;
+			}
+			String literal = text.substring(start, pos);
+			if (literal.equals("null")) {
+				return null;
+			}
+			if (literal.equals("true") || literal.equals("false")) {
+				return literal;
+			}
+			try {
+				new BigDecimal(literal);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Expected a value at " + start);
+			}
+			return literal;
+		}
+
+		private String string() {
+			expect('"');
+			StringBuilder sb = new StringBuilder();
+			while (true) {
+				if (atEnd()) {
+					throw new IllegalArgumentException("Unterminated string");
+				}
+				char c = text.charAt(pos++);
+				if (c == '"') {
+					return sb.toString();
+				}
+				if (c != '\\') {
+					sb.append(c);
+					continue;
+				}
+				if (atEnd()) {
+					throw new IllegalArgumentException("Unterminated string");
+				}
+				char e = text.charAt(pos++);
+				switch (e) {
+				case 'n':
+					sb.append('\n');
+					break;
+				case 'r':
+					sb.append('\r');
+					break;
+				case 't':
+					sb.append('\t');
+					break;
+				case 'b':
+					sb.append('\b');
+					break;
+				case 'f':
+					sb.append('\f');
+					break;
+				case 'u':
+					if (pos + 4 > text.length()) {
+						throw new IllegalArgumentException("Bad escape at " + pos);
+					}
+					try {
+						sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+					} catch (NumberFormatException ex) {
+						throw new IllegalArgumentException("Bad escape at " + pos);
+					}
+					pos += 4;
+					break;
+				default:
+					// \" \\ and \/
+					sb.append(e);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,229 @@
+package com.wileyedge.flooring.dao;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/// Reads a comma separated file straight from a FileChannel
+/// field boundaries are found in place in the buffer and numeric
+/// fields are parsed from the bytes without building substrings
+///
+/// the file is read whole and closed before parsing starts, it is never
+/// memory mapped as a live mapping stops the file being rewritten or
+/// deleted on Windows
+public class CsvReader implements Closeable {
+
+	// each thread keeps its last buffer for the next file, up to this size
+	private static final int MAX_SPARE = 8 << 20;
+	// taken while a reader is open so two readers on a thread never share it
+	private static final ThreadLocal<ByteBuffer> SPARE = new ThreadLocal<>();
+
+	private ByteBuffer buffer;
+	private final int limit;
+
+	private int position = 0;
+	private int lineStart = 0;
+	private int lineEnd = 0;
+
+	// start and end offsets of each field on the current line
+	private int[] fieldStarts = new int[16];
+	private int[] fieldEnds = new int[16];
+	private int fieldCount = 0;
+
+	// reused when a field has to be turned into a string
+	private byte[] scratch = new byte[64];
+
+	public CsvReader(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("File is too large to read: " + file);
+			}
+
+			ByteBuffer spare = SPARE.get();
+			if (spare != null && spare.capacity() >= size) {
+				SPARE.remove();
+				buffer = spare;
+				buffer.clear().limit((int) size);
+			} else {
+				buffer = ByteBuffer.allocate((int) size);
+			}
+			int read;
+			do {
+				read = channel.read(buffer);
+			} while (read >= 0 && buffer.hasRemaining());
+			buffer.flip();
+			limit = buffer.limit();
+		}
+	}
+
+	// moves to the next non empty line, returns false at the end of the file
+	public boolean nextLine() {
+		while (position < limit) {
+			lineStart = position;
+			fieldCount = 0;
+			int fieldStart = position;
+
+			// scan to the end of the line marking each comma
+			int i = position;
+			while (i < limit) {
+				byte b = buffer.get(i);
+				if (b == '\n') {
+					break;
+				}
+				if (b == ',') {
+					addField(fieldStart, i);
+					fieldStart = i + 1;
+				}
+				i++;
+			}
+			position = i + 1;
+
+			// drop the carriage return of windows line endings
+			int end = i;
+			if (end > lineStart && buffer.get(end - 1) == '\r') {
+				end--;
+			}
+			lineEnd = end;
+
+			if (lineEnd > lineStart) {
+				addField(fieldStart, Math.max(fieldStart, lineEnd));
+				return true;
+			}
+		}
+		fieldCount = 0;
+		return false;
+	}
+
+	public int getFieldCount() {
+		return fieldCount;
+	}
+
+	// the whole current line as a string
+	public String getLine() {
+		return decode(lineStart, lineEnd);
+	}
+
+	public String getString(int field) {
+		checkField(field);
+		return decode(fieldStarts[field], fieldEnds[field]);
+	}
+
+	public int getInt(int field) {
+		checkField(field);
+		long value = 0;
+		int start = fieldStarts[field];
+		int end = fieldEnds[field];
+		boolean negative = start < end && buffer.get(start) == '-';
+		int i = negative ? start + 1 : start;
+
+		if (i == end || end - i > 10) {
+			throw new NumberFormatException("Invalid integer: " + getString(field));
+		}
+
+		for (; i < end; i++) {
+			int digit = buffer.get(i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("Invalid integer: " + getString(field));
+			}
+			value = value * 10 + digit;
+		}
+		value = negative ? -value : value;
+
+		if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) {
+			throw new NumberFormatException("Invalid integer: " + getString(field));
+		}
+		return (int) value;
+	}
+
+	// parses a plain decimal such as 25.00 directly from the bytes
+	public BigDecimal getDecimal(int field) {
+		checkField(field);
+		int start = fieldStarts[field];
+		int end = fieldEnds[field];
+
+		boolean negative = start < end && buffer.get(start) == '-';
+		int i = negative ? start + 1 : start;
+		long unscaled = 0;
+		int scale = -1;
+		int digits = 0;
+
+		for (; i < end; i++) {
+			byte b = buffer.get(i);
+			if (b == '.' && scale < 0) {
+				scale = 0;
+				continue;
+			}
+			int digit = b - '0';
+			if (digit < 0 || digit > 9 || ++digits > 18) {
+				// exponents, very long numbers etc. take the slow path
+				return new BigDecimal(getString(field));
+			}
+			unscaled = unscaled * 10 + digit;
+			if (scale >= 0) {
+				scale++;
+			}
+		}
+
+		if (digits == 0) {
+			throw new NumberFormatException("Invalid decimal: " + getString(field));
+		}
+
+		return BigDecimal.valueOf(negative ? -unscaled : unscaled, Math.max(scale, 0));
+	}
+
+	// CRC32 of the whole file, used to tell if a file really changed
+	public long checksum() {
+		CRC32 crc = new CRC32();
+		ByteBuffer all = buffer.duplicate();
+		all.position(0).limit(limit);
+		crc.update(all);
+		return crc.getValue();
+	}
+
+	@Override
+	public void close() {
+		// the file is already closed, only the buffer goes back
+		if (buffer != null && buffer.capacity() <= MAX_SPARE) {
+			ByteBuffer spare = SPARE.get();
+			if (spare == null || spare.capacity() < buffer.capacity()) {
+				SPARE.set(buffer);
+			}
+		}
+		buffer = null;
+	}
+
+	private void addField(int start, int end) {
+		if (fieldCount == fieldStarts.length) {
+			fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+			fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+		}
+		fieldStarts[fieldCount] = start;
+		fieldEnds[fieldCount] = end;
+		fieldCount++;
+	}
+
+	private void checkField(int field) {
+		if (field < 0 || field >= fieldCount) {
+			throw new ArrayIndexOutOfBoundsException("Line has no field " + field + ": " + getLine());
+		}
+	}
+
+	private String decode(int start, int end) {
+		int length = end - start;
+		if (length > scratch.length) {
+			scratch = new byte[Math.max(length, scratch.length * 2)];
+		}
+		buffer.position(start);
+		buffer.get(scratch, 0, length);
+		return new String(scratch, 0, length, StandardCharsets.UTF_8);
+	}
+
+}
@@ -1,20 +1,34 @@
 package com.wileyedge.flooring.dao;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
-import java.util.Set;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
 import java.util.TreeMap;
-import java.util.stream.Stream;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Component;
 
@@ -26,16 +40,68 @@ import com.wileyedge.flooring.model.TaxInfo;
 @Component
 public class Dao implements IDao {
 
-	private String orderHeader = null;
+	static final String ORDER_HEADER = "OrderNumber,CustomerName,State,TaxRate,ProductType,Area,CostPerSquareFoot,LaborCostPerSquareFoot,MaterialCost,LaborCost,Tax,Total";
+	// size of the write buffer used when exporting
+	private static final int EXPORT_BUFFER_SIZE = 1 << 18;
+	// and when writing a single order file
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+	private String orderHeader = ORDER_HEADER;
 	private File orderFolder = new File("res\\Orders");
 	private File productFile = new File("res\\Data\\Products.txt");
 	private File taxesFile = new File("res\\Data\\Taxes.txt");
 	private File exportFile = new File("res\\Backup\\DataExport.txt");
 
-	private Scanner sc;
-	private PrintWriter pw;
+	// every reader and writer is local to its call, the only fields changed
+	// after setup are these results of the last load, published whole
+	private volatile int maxOrderNumber = 0;
+	private volatile List<String> loadFailures = new ArrayList<>();
+	// set on the first allocation, cleared when the order folder changes
+	private volatile OrderSequence sequence;
+
+	// changes go to the order journal and are folded into the files in the
+	// background, when off every change is written straight to its file
+	// turned off by any thread that finds the journal cant be opened
+	private volatile boolean journalling = true;
+	// opened on first use, cleared when the order folder changes
+	private volatile OrderJournal journal;
+
+	// a binary copy of the order files read at startup instead of the CSV
+	private boolean snapshots = true;
+	private volatile int partitionsFromSnapshot = 0;
+	private final ReadWriteLock localFileLock = new ReentrantReadWriteLock();
+
+	// states, product types, tax rates and costs repeat on every order so
+	// parsed orders share one instance of each value
+	private final FieldDictionary fieldDictionary = new FieldDictionary();
+	private boolean interning = true;
+
+	/// Takes count consecutive new order numbers and returns the first
+	/// numbers come from the sequence kept in the order folder, a folder
+	/// without one yet starts after the highest number in its files
+	@Override
+	public int allocateOrderNumbers(int count) {
+		return sequence().allocate(count);
+	}
 
-	private int maxOrderNumber = 0;
+	// the order folder's sequence, opened on first use and then kept so an
+	// allocation inside a reserved block takes no lock
+	private OrderSequence sequence() {
+		OrderSequence opened = sequence;
+		if (opened != null) {
+			return opened;
+		}
+		synchronized (this) {
+			if (sequence == null) {
+				try {
+					sequence = OrderSequence.open(orderFolder, this::findMaxOrderNumber);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			return sequence;
+		}
+	}
 
 	@Override
 	public int getMaxOrderNumber() {
@@ -49,168 +115,654 @@ public class Dao implements IDao {
 	@Override
 	public boolean saveChanges(LocalDate date, List<Order> orders) {
 
-		// format the date for filename
-		DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("MMddyyyy");
-		String formattedDate = date.format(dateTimeFormatter);
-
+		OrderJournal journal = journal();
+		Lock lock = fileLock().writeLock();
+		lock.lock();
 		try {
-			File file = new File(orderFolder.getAbsolutePath() + "\\Orders_" + formattedDate + ".txt"); // get the file
+			writePartitionFile(orderFile(date), orders, false);
 
-			file.createNewFile(); // create/overwrite existing file
+			// anything journalled for the date is now in the file
+			if (journal != null) {
+				journal.saved(date);
+			}
+		} // shouldnt get these errors
+		catch (IOException | UncheckedIOException e) {
+			e.printStackTrace();
+			return false;
+		} finally {
+			lock.unlock();
+		}
 
-			pw = new PrintWriter(file); // print header
-			pw.write(orderHeader);
+		return true;
+	}
 
-			for (Order o : orders) { // print each order formatted
-				pw.write("\r\n");
-				pw.write(o.formatOrder());
+	/// Records a single new order
+	/// with the journal on this is one sequential append to the journal,
+	/// otherwise the order is appended to the end of its date's file
+	@Override
+	public boolean appendOrder(LocalDate date, Order order) {
 
+		OrderJournal journal = journal();
+		if (journal != null) {
+			try {
+				journal.add(date, order);
+				return true;
+			} catch (UncheckedIOException e) {
+				e.printStackTrace();
+				return false;
 			}
+		}
 
-		} // shouldnt get these errors
-		catch (FileNotFoundException e) {
-			e.printStackTrace();
+		File file = orderFile(date);
+		Lock lock = fileLock().writeLock();
+		lock.lock();
+		boolean newFile = !file.exists();
+
+		try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND)) {
+			if (newFile) {
+				writer.write(orderHeader);
+			}
+			// records are separated by a line break before each order
+			writer.write("\r\n");
+			writer.write(order.formatOrder());
 		} catch (IOException e) {
 			e.printStackTrace();
+			return false;
 		} finally {
-			// cleanup
-			pw.flush();
-			pw.close();
+			lock.unlock();
 		}
 
 		return true;
 	}
 
-	// exports all orders to the backup file
+	/// Records an edit to an existing order
 	@Override
-	public boolean exportOrders(Map<LocalDate, List<Order>> map) {
+	public boolean updateOrder(LocalDate date, Order order) {
 
-		// join all orders into one list
-		// sort based on order ID
-		// write out to backup folder + date
-		Collection<List<Order>> orders = map.values();
-		List<Order> allOrders = new ArrayList<>();
+		OrderJournal journal = journal();
+		if (journal != null) {
+			try {
+				journal.update(date, order);
+				return true;
+			} catch (UncheckedIOException e) {
+				e.printStackTrace();
+				return false;
+			}
+		}
 
-		for (List<Order> o1 : orders) {
-			allOrders.addAll(o1);
+		return rewritePartition(date, orders -> orders.replaceAll(
+				o -> o.getOrderNumber() == order.getOrderNumber() ? order : o));
+	}
+
+	/// Records the removal of an order
+	@Override
+	public boolean deleteOrder(LocalDate date, int orderNumber) {
+
+		OrderJournal journal = journal();
+		if (journal != null) {
+			try {
+				journal.remove(date, orderNumber);
+				return true;
+			} catch (UncheckedIOException e) {
+				e.printStackTrace();
+				return false;
+			}
 		}
 
-		allOrders.sort(new OrderNumberComparator());
+		return rewritePartition(date, orders -> orders.removeIf(o -> o.getOrderNumber() == orderNumber));
+	}
 
-		try {
-			exportFile.createNewFile();
-
-			pw = new PrintWriter(exportFile);
-			pw.write(orderHeader + ",OrderDate");
-
-			DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM-dd-yyyy");
-			
-			//added stream - hidden requirement
-			allOrders.stream().forEach(x -> {
-				LocalDate date = x.getOrderDate();
-				String formattedDate = date.format(formatter);
-				pw.write("\r\n");
-				pw.write(x.formatOrder() + "," + formattedDate); // write the order to the file
-
-			
-			});
-			
-			
-//			for (Order o2 : allOrders) {
-//
-//				// format the date
-//				LocalDate date = o2.getOrderDate();
-//				DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM-dd-yyyy");
-//
-//				String formattedDate = date.format(formatter);
-//				pw.write("\r\n");
-//				pw.write(o2.formatOrder() + "," + formattedDate); // write the order to the file
-//
-//			}
+	/// Turns the order journal on or off, off writes every change to its file
+	public void setJournalling(boolean journalling) {
+		this.journalling = journalling;
+	}
+
+	/// Folds the order journal into the order files now rather than waiting
+	/// for the background compaction
+	public void compactJournal() {
+		OrderJournal journal = journal();
+		if (journal != null) {
+			try {
+				journal.compact();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
 
+	// reads a partition file, changes it and writes it back
+	private boolean rewritePartition(LocalDate date, Consumer<List<Order>> change) {
+		File file = orderFile(date);
+		Lock lock = fileLock().writeLock();
+		lock.lock();
+		try {
+			List<Order> orders = file.exists() ? readPartitionFile(file, date) : new ArrayList<>();
+			change.accept(orders);
+			writePartitionFile(file, orders, false);
 		} catch (IOException e) {
 			e.printStackTrace();
+			return false;
 		} finally {
-			pw.flush();
-			pw.close();
+			lock.unlock();
+		}
+		return true;
+	}
+
+	// the journal for the order folder, null when journalling is off
+	private OrderJournal journal() {
+		if (!journalling) {
+			return null;
+		}
+		// another dao on the folder may have closed the shared journal
+		OrderJournal opened = journal;
+		if (opened != null && !opened.isClosed()) {
+			return opened;
+		}
+		synchronized (this) {
+			if (journal == null || journal.isClosed()) {
+				try {
+					journal = OrderJournal.open(orderFolder);
+				} catch (IOException e) {
+					// cant journal, fall back to writing the files directly
+					e.printStackTrace();
+					journalling = false;
+					return null;
+				}
+			}
+			return journal;
+		}
+	}
+
+	/// Folds the journal into the order files and stops its threads, changes
+	/// made afterwards are written straight to their files
+	/// returns false if the journal could not be folded, it is replayed the
+	/// next time the folder is opened
+	@Override
+	public boolean close() {
+		OrderJournal closing;
+		synchronized (this) {
+			journalling = false;
+			closing = journal;
+			journal = null;
+		}
+		if (closing == null) {
+			return true;
+		}
+		try {
+			closing.close();
+			return true;
+		} catch (IOException e) {
+			System.out.println("  * Could not fold the order journal: " + e);
+			return false;
+		}
+	}
+
+	// lock held while reading or writing the order files
+	private ReadWriteLock fileLock() {
+		OrderJournal journal = journal();
+		return journal != null ? journal.getFileLock() : localFileLock;
+	}
+
+	// the order file for a date, Orders_MMddyyyy.txt
+	private File orderFile(LocalDate date) {
+		return orderFile(orderFolder, date);
+	}
+
+	static File orderFile(File orderFolder, LocalDate date) {
+		return new File(orderFolder, "Orders_" + date.format(DateTimeFormatter.ofPattern("MMddyyyy")) + ".txt");
+	}
+
+	// writes a whole partition file, sync forces it to disk before returning
+	static void writePartitionFile(File file, List<Order> orders, boolean sync) throws IOException {
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			OrderEncoder encoder = new OrderEncoder(out, WRITE_BUFFER_SIZE);
+			encoder.writeString(ORDER_HEADER); // print header
+
+			for (Order o : orders) { // print each order formatted
+				encoder.writeLineBreak();
+				encoder.writeOrder(o);
+			}
+
+			encoder.flush();
+			if (sync) {
+				out.getFD().sync();
+			}
+		}
+	}
+
+	// reads every order in a partition file
+	static List<Order> readPartitionFile(File file, LocalDate date) throws IOException {
+		try (CsvReader reader = new CsvReader(file)) {
+			return readOrders(reader, date, null);
+		}
+	}
+
+	private static List<Order> readOrders(CsvReader reader, LocalDate date, FieldDictionary dictionary)
+			throws IOException {
+		List<Order> orders = new ArrayList<>();
+
+		// read the header line
+		if (!reader.nextLine()) {
+			throw new IOException("missing header");
+		}
+
+		// loop through all lines
+		// create order obj from the data
+		// add to list to return
+		while (reader.nextLine()) {
+			orders.add(parseOrder(reader, 0, date, dictionary));
+		}
+		return orders;
+	}
+
+	// builds an order from the fields of the current line starting at first
+	// repeated fields are swapped for their shared instance when a
+	// dictionary is given
+	static Order parseOrder(CsvReader reader, int first, LocalDate date, FieldDictionary dictionary) {
+		int orderNumber = reader.getInt(first);
+
+		// names may hold commas, any fields past the twelve belong to the name
+		int extra = Math.max(0, reader.getFieldCount() - first - 12);
+		String customerName = reader.getString(first + 1);
+		if (extra > 0) {
+			StringBuilder name = new StringBuilder(customerName);
+			for (int i = 1; i <= extra; i++) {
+				name.append(',').append(reader.getString(first + 1 + i));
+			}
+			customerName = name.toString();
+		}
+		int f = first + extra;
+
+		String state = reader.getString(f + 2); // is abbreviation
+		BigDecimal taxRate = reader.getDecimal(f + 3);
+		String productType = reader.getString(f + 4);
+		BigDecimal area = reader.getDecimal(f + 5);
+		BigDecimal costPerSquareFoot = reader.getDecimal(f + 6);
+		BigDecimal labourCostPerSquareFoot = reader.getDecimal(f + 7);
+		BigDecimal materialCost = reader.getDecimal(f + 8);
+		BigDecimal labourCost = reader.getDecimal(f + 9);
+		BigDecimal tax = reader.getDecimal(f + 10);
+		BigDecimal total = reader.getDecimal(f + 11);
+
+		if (dictionary != null) {
+			state = dictionary.canonical(state);
+			taxRate = dictionary.canonical(taxRate);
+			productType = dictionary.canonical(productType);
+			costPerSquareFoot = dictionary.canonical(costPerSquareFoot);
+			labourCostPerSquareFoot = dictionary.canonical(labourCostPerSquareFoot);
+		}
+
+		return new Order(date, orderNumber, customerName, state, taxRate, productType, area, costPerSquareFoot,
+				labourCostPerSquareFoot, materialCost, labourCost, tax, total);
+	}
+
+	// exports all orders to the backup file
+	// each date's orders are already close to order number order so instead of
+	// copying everything into one list and sorting it the dates are merged
+	// with a priority queue holding one cursor per date
+	@Override
+	public boolean exportOrders(Map<LocalDate, List<Order>> map) {
+
+		OrderNumberComparator comparator = new OrderNumberComparator();
+		PriorityQueue<ExportCursor> queue = new PriorityQueue<>(Math.max(1, map.size()),
+				(a, b) -> comparator.compare(a.current(), b.current()));
+
+		for (Map.Entry<LocalDate, List<Order>> entry : map.entrySet()) {
+			List<Order> orders = entry.getValue();
+			if (orders == null || orders.isEmpty()) {
+				continue;
+			}
+			// the merge needs each date in order, only dates that arent are sorted
+			if (!isSorted(orders, comparator)) {
+				orders = new ArrayList<>(orders);
+				orders.sort(comparator);
+			}
+			queue.add(new ExportCursor(orders, entry.getKey()));
+		}
+
+		try (FileChannel channel = FileChannel.open(exportFile.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+				OutputStream out = Channels.newOutputStream(channel)) {
+
+			// orders are encoded straight into one reused buffer and the
+			// encoder only formats the date again when it changes
+			OrderEncoder encoder = new OrderEncoder(out, EXPORT_BUFFER_SIZE);
+			encoder.writeString(orderHeader + ",OrderDate");
+
+			// write the lowest order number of all the dates each time
+			while (!queue.isEmpty()) {
+				ExportCursor cursor = queue.poll();
+				encoder.writeLineBreak();
+				encoder.writeOrder(cursor.current()); // write the order to the file
+				encoder.writeByte(',');
+				encoder.writeDate(cursor.date);
+
+				if (cursor.advance()) {
+					queue.add(cursor);
+				}
+			}
+			encoder.flush();
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
 		}
 
 		System.out.println("  * Orders Exported Successfully");
 		return true;
 	}
 
+	private static boolean isSorted(List<Order> orders, Comparator<Order> comparator) {
+		for (int i = 1; i < orders.size(); i++) {
+			if (comparator.compare(orders.get(i - 1), orders.get(i)) > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// position in one date's orders during an export
+	private static class ExportCursor {
+		private final List<Order> orders;
+		private final LocalDate date;
+		private int index = 0;
+
+		private ExportCursor(List<Order> orders, LocalDate date) {
+			this.orders = orders;
+			this.date = date;
+		}
+
+		private Order current() {
+			return orders.get(index);
+		}
+
+		private boolean advance() {
+			return ++index < orders.size();
+		}
+	}
+
 	// gets all the orders from the order files
+	// each order file is a date partition, partitions are parsed in parallel
+	// on the fork-join pool and merged back into one sorted map
 	@Override
 	public Map<LocalDate, List<Order>> getOrders() {
 
-		Map<LocalDate, List<Order>> map = new TreeMap<>();
+		// opening the journal replays it into the files so do it first
+		OrderJournal journal = journal();
+
 		// orderFolder contains all order files
 		// get the list of files
 		String[] orderFiles = orderFolder.list();
+		if (orderFiles == null) {
+			return new TreeMap<>();
+		}
 
-		// for each order file
-		for (String s : orderFiles) {
-			// get the date to be used as the key for the map
-			int orderYear = Integer.parseInt(s.substring(11, 15));
-			int orderDay = Integer.parseInt(s.substring(9, 11));
-			int orderMonth = Integer.parseInt(s.substring(7, 9));
-			int orderNumber;
-			LocalDate date = LocalDate.of(orderYear, orderMonth, orderDay);
+		// unchanged files are taken from the snapshot, the rest are parsed
+		File snapshotFile = new File(orderFolder, OrderSnapshot.SNAPSHOT_FILE);
+		Map<LocalDate, OrderSnapshot.Partition> snapshot = snapshots
+				? OrderSnapshot.read(snapshotFile, dictionary())
+				: new TreeMap<>();
+
+		// parse every partition, a failed file does not stop the others
+		Lock lock = fileLock().readLock();
+		List<PartitionLoad> loads;
+		Map<LocalDate, List<Order>> journalled = new TreeMap<>();
+		lock.lock();
+		try {
+			loads = Arrays.stream(orderFiles).parallel().filter(Dao::isOrderFile)
+					.map(s -> loadPartition(s, snapshot)).collect(Collectors.toList());
 
-			// open the file
-			File tempFile = new File(orderFolder.getAbsolutePath() + "\\" + s);
+			partitionsFromSnapshot = (int) loads.stream().filter(l -> l.fromSnapshot).count();
+			if (snapshots) {
+				updateSnapshot(snapshotFile, snapshot, loads);
+			}
 
-			List<Order> orders = new ArrayList<>();
-			try {
-				sc = new Scanner(tempFile);
-				// read the header line
-				String header = sc.nextLine();
-				if (orderHeader == null) {
-					orderHeader = header;
+			// apply changes that are still only in the journal
+			if (journal != null) {
+				for (PartitionLoad l : loads) {
+					if (l.error == null) {
+						l.orders = journal.apply(l.date, l.orders);
+					}
 				}
+				for (LocalDate date : journal.getDates()) {
+					journalled.put(date, journal.apply(date, new ArrayList<>()));
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		// report any files that could not be read
+		loadFailures = loads.stream().filter(l -> l.error != null)
+				.map(l -> l.fileName + ": " + l.error).collect(Collectors.toList());
+		loadFailures.forEach(f -> System.out.println("  * Could not load order file " + f));
+
+		// merge the partitions into the map keyed by date
+		Map<LocalDate, List<Order>> map = loads.parallelStream().filter(l -> l.error == null)
+				.collect(Collectors.toMap(l -> l.date, l -> l.orders, (a, b) -> {
+					a.addAll(b);
+					return a;
+				}, TreeMap::new));
+
+		// dates that only exist in the journal so far
+		journalled.forEach(map::putIfAbsent);
 
-				// loop through all lines
-				// create order obj from the data
-				// add to list to return
-				while (sc.hasNextLine()) {
-					String[] arr = sc.nextLine().split(",");
-
-					maxOrderNumber++;
-					orderNumber = Integer.parseInt(arr[0]);
-					String customerName = arr[1];
-					String state = arr[2]; // is abbreviation
-					BigDecimal taxRate = new BigDecimal(arr[3]);
-					String productType = arr[4];
-					BigDecimal area = new BigDecimal(arr[5]);
-					BigDecimal costPerSquareFoot = new BigDecimal(arr[6]);
-					BigDecimal labourCostPerSquareFoot = new BigDecimal(arr[7]);
-					BigDecimal materialCost = new BigDecimal(arr[8]);
-					BigDecimal labourCost = new BigDecimal(arr[9]);
-					BigDecimal tax = new BigDecimal(arr[10]);
-					BigDecimal total = new BigDecimal(arr[11]);
-
-					Order o = new Order(date, orderNumber, customerName, state, taxRate, productType, area,
-							costPerSquareFoot, labourCostPerSquareFoot, materialCost, labourCost, tax, total);
-
-					orders.add(o);
+		// highest order number across all partitions
+		maxOrderNumber = map.values().parallelStream().flatMap(List::stream).mapToInt(Order::getOrderNumber).max()
+				.orElse(0);
+
+		return map;
+	}
 
+	// gets the orders for a single date, null if there is no file for it
+	@Override
+	public List<Order> getOrders(LocalDate date) {
+
+		OrderJournal journal = journal();
+		File file = orderFile(date);
+		Lock lock = fileLock().readLock();
+		lock.lock();
+		try {
+			List<Order> orders = null;
+			if (file.exists()) {
+				PartitionLoad load = loadPartition(file.getName(), null);
+				if (load.error != null) {
+					System.out.println("  * Could not load order file " + file.getName() + ": " + load.error);
+					return null;
 				}
-				// finished for that file
-				// add to the map
-				map.put(date, orders);
+				orders = load.orders;
+			}
+			return journal != null ? journal.apply(date, orders) : orders;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// indexes the order files by date without reading them
+	@Override
+	public NavigableSet<LocalDate> getOrderDates() {
+
+		NavigableSet<LocalDate> dates = new TreeSet<>();
+		OrderJournal journal = journal();
+		if (journal != null) {
+			dates.addAll(journal.getDates());
+		}
+
+		String[] orderFiles = orderFolder.list();
+		if (orderFiles == null) {
+			return dates;
+		}
+
+		for (String s : orderFiles) {
+			LocalDate date = isOrderFile(s) ? dateFromFileName(s) : null;
+			if (date != null) {
+				dates.add(date);
+			}
+		}
+		return dates;
+	}
 
-			} catch (FileNotFoundException fnf) {
-				// TODO Auto-generated catch block
-				fnf.printStackTrace();
+	// finds the highest order number by reading only the first column of
+	// each order file, much cheaper than building every order
+	@Override
+	public int findMaxOrderNumber() {
+
+		OrderJournal journal = journal();
+		int journalMax = journal != null ? journal.getMaxOrderNumber() : 0;
+
+		String[] orderFiles = orderFolder.list();
+		if (orderFiles == null) {
+			return journalMax;
+		}
+
+		return Math.max(journalMax, Arrays.stream(orderFiles).parallel().filter(Dao::isOrderFile).mapToInt(s -> {
+			int max = 0;
+			try (CsvReader reader = new CsvReader(new File(orderFolder, s))) {
+				reader.nextLine(); // skip header
+				while (reader.nextLine()) {
+					max = Math.max(max, reader.getInt(0));
+				}
 			} catch (Exception e) {
-				e.printStackTrace();
-			} finally {
-				sc.close();
+				System.out.println("  * Could not read order numbers from " + s + ": " + e);
+			}
+			return max;
+		}).max().orElse(0));
+	}
+
+	// true if the file name looks like Orders_MMddyyyy.txt
+	private static boolean isOrderFile(String fileName) {
+		return fileName.length() == 19 && fileName.startsWith("Orders_") && fileName.endsWith(".txt");
+	}
+
+	// gets the date from Orders_MMddyyyy.txt, null if it is not a valid date
+	private static LocalDate dateFromFileName(String fileName) {
+		try {
+			int orderYear = Integer.parseInt(fileName.substring(11, 15));
+			int orderDay = Integer.parseInt(fileName.substring(9, 11));
+			int orderMonth = Integer.parseInt(fileName.substring(7, 9));
+			return LocalDate.of(orderYear, orderMonth, orderDay);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	// reads one order file, never throws so one bad file cant stop the load
+	// the snapshot copy is used instead when the file has not changed
+	private PartitionLoad loadPartition(String fileName, Map<LocalDate, OrderSnapshot.Partition> snapshot) {
+
+		PartitionLoad load = new PartitionLoad(fileName);
+
+		// get the date to be used as the key for the map
+		load.date = dateFromFileName(fileName);
+		if (load.date == null) {
+			load.error = "invalid date in file name";
+			return load;
+		}
+
+		File file = new File(orderFolder, fileName);
+		load.modified = file.lastModified();
+		load.size = file.length();
+		OrderSnapshot.Partition cached = snapshot == null ? null : snapshot.get(load.date);
+
+		// open the file, each task uses its own reader
+		// the file is always checksummed, a matching size and time alone
+		// would miss an edit within the time's granularity or a file copied
+		// with its times kept
+		try (CsvReader reader = new CsvReader(file)) {
+			load.checksum = reader.checksum();
+
+			// unchanged, no need to parse it
+			if (cached != null && cached.size == load.size && cached.checksum == load.checksum) {
+				load.orders = cached.orders;
+				load.fromSnapshot = true;
+				// touched, keep the new time in the snapshot
+				load.snapshotStale = cached.modified != load.modified;
+				return load;
 			}
 
+			load.orders = readOrders(reader, load.date, dictionary());
+			load.snapshotStale = true;
+		} catch (NoSuchFileException nsf) {
+			load.error = "file not found";
+		} catch (Exception e) {
+			load.error = e.toString();
 		}
 
-		return map;
+		return load;
+	}
+
+	// writes a new snapshot if any file changed since the last one
+	// must run before journal changes are applied so it matches the files
+	private void updateSnapshot(File snapshotFile, Map<LocalDate, OrderSnapshot.Partition> snapshot,
+			List<PartitionLoad> loads) {
+
+		boolean stale = loads.size() != snapshot.size();
+		List<OrderSnapshot.Partition> partitions = new ArrayList<>();
+		for (PartitionLoad l : loads) {
+			if (l.error != null) {
+				// leave the snapshot alone until every file can be read
+				return;
+			}
+			stale |= l.snapshotStale;
+			partitions.add(new OrderSnapshot.Partition(l.date, l.modified, l.size, l.checksum, l.orders));
+		}
+
+		if (stale) {
+			try {
+				OrderSnapshot.write(snapshotFile, partitions);
+			} catch (Exception e) {
+				System.out.println("  * Could not write order snapshot: " + e);
+			}
+		}
+	}
+
+	// the dictionary parsed orders are canonicalized against, null when off
+	private FieldDictionary dictionary() {
+		return interning ? fieldDictionary : null;
+	}
+
+	/// Turns sharing of repeated order fields on or off
+	public void setInterning(boolean interning) {
+		this.interning = interning;
+	}
+
+	/// Method used to see how many repeated values were shared and roughly
+	/// how much heap that saved
+	public FieldDictionary getFieldDictionary() {
+		return fieldDictionary;
+	}
+
+	/// Turns the startup snapshot on or off
+	public void setSnapshots(boolean snapshots) {
+		this.snapshots = snapshots;
+	}
+
+	/// Method used to see how many dates the last load took from the snapshot
+	public int getPartitionsFromSnapshot() {
+		return partitionsFromSnapshot;
+	}
+
+	/// Method used to see which order files failed during the last load
+	public List<String> getLoadFailures() {
+		return loadFailures;
+	}
+
+	// result of loading a single order file
+	private static class PartitionLoad {
+		private final String fileName;
+		private LocalDate date;
+		private List<Order> orders = new ArrayList<>();
+		private String error;
+		private long modified;
+		private long size;
+		private long checksum;
+		private boolean fromSnapshot = false;
+		private boolean snapshotStale = false;
+
+		private PartitionLoad(String fileName) {
+			this.fileName = fileName;
+		}
 	}
 
 	// get all products from products file
@@ -219,19 +771,17 @@ public class Dao implements IDao {
 	public List<Product> getProducts() {
 
 		List<Product> products = new ArrayList<>();
-		try {
-			sc = new Scanner(productFile);
+		try (CsvReader reader = new CsvReader(productFile)) {
 			// read the header line
-			String header = sc.nextLine();
+			reader.nextLine();
 
 			// loop through all lines
 			// create product obj from the data
 			// add to list to return
-			while (sc.hasNextLine()) {
-				String[] arr = sc.nextLine().split(",");
-				String pType = arr[0];
-				BigDecimal cpsf = new BigDecimal(arr[1]);
-				BigDecimal lcpsf = new BigDecimal(arr[2]);
+			while (reader.nextLine()) {
+				String pType = fieldDictionary.canonical(reader.getString(0));
+				BigDecimal cpsf = fieldDictionary.canonical(reader.getDecimal(1));
+				BigDecimal lcpsf = fieldDictionary.canonical(reader.getDecimal(2));
 
 				Product p = new Product(pType, cpsf, lcpsf);
 
@@ -242,12 +792,10 @@ public class Dao implements IDao {
 //			System.out.println("All products imported Successfully");
 			return products;
 
-		} catch (FileNotFoundException fnf) {
-			fnf.printStackTrace();
+		} catch (NoSuchFileException nsf) {
+			nsf.printStackTrace();
 		} catch (Exception e) {
 			e.printStackTrace();
-		} finally {
-			sc.close();
 		}
 
 		return null;
@@ -258,19 +806,17 @@ public class Dao implements IDao {
 	@Override
 	public List<TaxInfo> getTaxInfo() {
 		List<TaxInfo> taxes = new ArrayList<>();
-		try {
-			sc = new Scanner(taxesFile);
+		try (CsvReader reader = new CsvReader(taxesFile)) {
 			// read the header line
-			String header = sc.nextLine();
+			reader.nextLine();
 
 			// loop through all lines
 			// create taxinfo obj from the data
 			// add to list to return
-			while (sc.hasNextLine()) {
-				String[] arr = sc.nextLine().split(",");
-				String sAbbr = arr[0];
-				String sName = arr[1];
-				BigDecimal taxRate = new BigDecimal(arr[2]);
+			while (reader.nextLine()) {
+				String sAbbr = fieldDictionary.canonical(reader.getString(0));
+				String sName = reader.getString(1);
+				BigDecimal taxRate = fieldDictionary.canonical(reader.getDecimal(2));
 
 				TaxInfo t = new TaxInfo(sAbbr, sName, taxRate);
 
@@ -281,12 +827,10 @@ public class Dao implements IDao {
 //			System.out.println("Tax info imported Successfully");
 			return taxes;
 
-		} catch (FileNotFoundException fnf) {
-			fnf.printStackTrace();
+		} catch (NoSuchFileException nsf) {
+			nsf.printStackTrace();
 		} catch (Exception e) {
 			e.printStackTrace();
-		} finally {
-			sc.close();
 		}
 
 		return null;
@@ -295,6 +839,8 @@ public class Dao implements IDao {
 	/// Method only used in the Unit test to assign values for testing
 	public void setTestFiles(String orderFolder, String productFile, String taxesFile, String exportFile) {
 		this.orderFolder = new File(orderFolder);
+		this.sequence = null;
+		this.journal = null;
 		this.productFile = new File(productFile);
 		this.taxesFile = new File(taxesFile);
 		this.exportFile = new File(exportFile);
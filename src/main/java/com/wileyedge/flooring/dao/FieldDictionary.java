@@ -0,0 +1,101 @@
+package com.wileyedge.flooring.dao;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/// Canonical instances of the order fields that repeat on every line
+/// (state, product type, tax rate and the per square foot costs)
+/// it is seeded with the values from the tax and product files so parsed
+/// orders share the same String and BigDecimal objects as those lists
+///
+/// safe to use from the parallel partition loads
+public class FieldDictionary {
+
+	// stops a file full of unexpected values growing the dictionary for ever,
+	// past this new values are returned as they are
+	private static final int MAX_ENTRIES = 4096;
+
+	private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+	// BigDecimal equals compares scale too so 4.45 and 4.450 stay separate
+	private final ConcurrentHashMap<BigDecimal, BigDecimal> decimals = new ConcurrentHashMap<>();
+
+	private final AtomicLong duplicates = new AtomicLong();
+	private final AtomicLong bytesSaved = new AtomicLong();
+
+	public String canonical(String value) {
+		if (value == null) {
+			return null;
+		}
+		String shared = strings.get(value);
+		if (shared == null) {
+			if (strings.size() >= MAX_ENTRIES) {
+				return value;
+			}
+			shared = strings.putIfAbsent(value, value);
+			if (shared == null) {
+				return value;
+			}
+		}
+		if (shared != value) {
+			duplicates.incrementAndGet();
+			bytesSaved.addAndGet(stringSize(value));
+		}
+		return shared;
+	}
+
+	public BigDecimal canonical(BigDecimal value) {
+		if (value == null) {
+			return null;
+		}
+		BigDecimal shared = decimals.get(value);
+		if (shared == null) {
+			if (decimals.size() >= MAX_ENTRIES) {
+				return value;
+			}
+			shared = decimals.putIfAbsent(value, value);
+			if (shared == null) {
+				return value;
+			}
+		}
+		if (shared != value) {
+			duplicates.incrementAndGet();
+			bytesSaved.addAndGet(decimalSize(value));
+		}
+		return shared;
+	}
+
+	public int size() {
+		return strings.size() + decimals.size();
+	}
+
+	/// How many parsed values were replaced by a shared instance
+	public long getDuplicates() {
+		return duplicates.get();
+	}
+
+	/// Estimate of the heap those replaced values would have kept, using the
+	/// usual 64 bit layout with compressed pointers
+	public long getBytesSaved() {
+		return bytesSaved.get();
+	}
+
+	// String object plus its byte[] of latin-1 characters
+	private static long stringSize(String value) {
+		return 24 + align(16 + value.length());
+	}
+
+	// BigDecimal object, plus a BigInteger when it doesnt fit a long
+	private static long decimalSize(BigDecimal value) {
+		long size = 40;
+		if (value.unscaledValue().bitLength() > 63) {
+			size += 40 + align(16 + 4 * (value.unscaledValue().bitLength() / 32 + 1));
+		}
+		return size;
+	}
+
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+
+}
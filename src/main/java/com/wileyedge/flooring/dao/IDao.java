@@ -3,6 +3,7 @@ package com.wileyedge.flooring.dao;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 
 import org.springframework.stereotype.Component;
 
@@ -15,10 +16,18 @@ public interface IDao {
 	
 	
 	boolean saveChanges(LocalDate date ,List<Order> orders);
+	boolean appendOrder(LocalDate date, Order order);
+	boolean updateOrder(LocalDate date, Order order);
+	boolean deleteOrder(LocalDate date, int orderNumber);
 	Map<LocalDate,List<Order>> getOrders();
+	List<Order> getOrders(LocalDate date);
+	NavigableSet<LocalDate> getOrderDates();
+	int findMaxOrderNumber();
 	List<Product> getProducts();
 	List<TaxInfo> getTaxInfo();
 	int getMaxOrderNumber();
+	int allocateOrderNumbers(int count);
+	boolean close();
 	boolean exportOrders(Map<LocalDate,List<Order>> map);
 
 }
@@ -0,0 +1,260 @@
+package com.wileyedge.flooring.dao;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import com.wileyedge.flooring.model.Order;
+
+/// Writes orders as UTF-8 CSV lines straight into a reusable byte buffer
+/// producing the same text as Order.formatOrder without building strings
+///
+/// decimals that fit a long are rendered digit by digit, the fields that
+/// are shared between orders (tax rate and per square foot costs) are
+/// rendered once and copied while the same instance repeats
+public class OrderEncoder implements Flushable {
+
+	private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+	private static final byte[] LINE_BREAK = { '\r', '\n' };
+	private static final double[] POWERS_OF_TEN = new double[18];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private final OutputStream out;
+	private final byte[] buffer;
+	private int count = 0;
+
+	// the last date written as MM-dd-yyyy
+	private long cachedEpochDay = Long.MIN_VALUE;
+	private final byte[] cachedDate = new byte[10];
+
+	// last rendering of each shared decimal field, keyed by instance
+	private final DecimalCache taxRateCache = new DecimalCache();
+	private final DecimalCache costCache = new DecimalCache();
+	private final DecimalCache labourCostCache = new DecimalCache();
+
+	// digits are written backwards into this then copied
+	private final byte[] digits = new byte[20];
+
+	public OrderEncoder(OutputStream out, int bufferSize) {
+		this.out = out;
+		this.buffer = new byte[Math.max(bufferSize, 64)];
+	}
+
+	// the fields of Order.formatOrder separated by commas
+	public void writeOrder(Order o) throws IOException {
+		writeInt(o.getOrderNumber());
+		writeByte(',');
+		writeString(o.getCustomerName());
+		writeByte(',');
+		writeString(o.getState());
+		writeByte(',');
+		writeDecimal(o.getTaxRate(), taxRateCache);
+		writeByte(',');
+		writeString(o.getProductType());
+		writeByte(',');
+		writeDecimal(o.getArea());
+		writeByte(',');
+		writeDecimal(o.getCostPerSquareFoot(), costCache);
+		writeByte(',');
+		writeDecimal(o.getLabourCostPerSquareFoot(), labourCostCache);
+		writeByte(',');
+		writeDecimal(o.getMaterialCost());
+		writeByte(',');
+		writeDecimal(o.getLabourCost());
+		writeByte(',');
+		writeDecimal(o.getTax());
+		writeByte(',');
+		writeDecimal(o.getTotal());
+	}
+
+	public void writeLineBreak() throws IOException {
+		writeBytes(LINE_BREAK, 0, LINE_BREAK.length);
+	}
+
+	// MM-dd-yyyy, only formatted again when the date changes
+	public void writeDate(LocalDate date) throws IOException {
+		long epochDay = date.toEpochDay();
+		if (epochDay != cachedEpochDay) {
+			int month = date.getMonthValue();
+			int day = date.getDayOfMonth();
+			int year = date.getYear();
+			if (year < 0 || year > 9999) {
+				writeString(date.format(DateTimeFormatter.ofPattern("MM-dd-yyyy")));
+				return;
+			}
+			cachedDate[0] = (byte) ('0' + month / 10);
+			cachedDate[1] = (byte) ('0' + month % 10);
+			cachedDate[2] = '-';
+			cachedDate[3] = (byte) ('0' + day / 10);
+			cachedDate[4] = (byte) ('0' + day % 10);
+			cachedDate[5] = '-';
+			cachedDate[6] = (byte) ('0' + year / 1000);
+			cachedDate[7] = (byte) ('0' + year / 100 % 10);
+			cachedDate[8] = (byte) ('0' + year / 10 % 10);
+			cachedDate[9] = (byte) ('0' + year % 10);
+			cachedEpochDay = epochDay;
+		}
+		writeBytes(cachedDate, 0, cachedDate.length);
+	}
+
+	public void writeByte(char c) throws IOException {
+		if (count == buffer.length) {
+			flushBuffer();
+		}
+		buffer[count++] = (byte) c;
+	}
+
+	// UTF-8 without going through a CharsetEncoder
+	public void writeString(String s) throws IOException {
+		if (s == null) {
+			writeBytes(NULL, 0, NULL.length);
+			return;
+		}
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			if (buffer.length - count < 4) {
+				flushBuffer();
+			}
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				buffer[count++] = (byte) c;
+			} else if (c < 0x800) {
+				buffer[count++] = (byte) (0xC0 | c >> 6);
+				buffer[count++] = (byte) (0x80 | c & 0x3F);
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, s.charAt(++i));
+				buffer[count++] = (byte) (0xF0 | cp >> 18);
+				buffer[count++] = (byte) (0x80 | cp >> 12 & 0x3F);
+				buffer[count++] = (byte) (0x80 | cp >> 6 & 0x3F);
+				buffer[count++] = (byte) (0x80 | cp & 0x3F);
+			} else if (Character.isSurrogate(c)) {
+				// unpaired surrogates become ? like String.getBytes does
+				buffer[count++] = '?';
+			} else {
+				buffer[count++] = (byte) (0xE0 | c >> 12);
+				buffer[count++] = (byte) (0x80 | c >> 6 & 0x3F);
+				buffer[count++] = (byte) (0x80 | c & 0x3F);
+			}
+		}
+	}
+
+	public void writeInt(long value) throws IOException {
+		int start = renderDigits(value, 0);
+		writeBytes(digits, start, digits.length - start);
+	}
+
+	// the same text as BigDecimal.toString
+	public void writeDecimal(BigDecimal value) throws IOException {
+		if (value == null) {
+			writeBytes(NULL, 0, NULL.length);
+			return;
+		}
+		int scale = value.scale();
+		int precision = value.precision();
+		// toString switches to exponent form for negative scales and very
+		// small numbers, and wider values dont fit a long, leave those to it
+		if (scale < 0 || scale > 17 || precision > 18 || precision - 1 - scale < -6) {
+			writeString(value.toString());
+			return;
+		}
+		long unscaled;
+		if (scale == 0) {
+			unscaled = value.longValue();
+		} else if (precision <= 15) {
+			// unscaledValue builds a BigInteger, going through the double is
+			// exact here: below 2^51 the two roundings add up to under half
+			unscaled = Math.round(value.doubleValue() * POWERS_OF_TEN[scale]);
+		} else {
+			unscaled = value.unscaledValue().longValue();
+		}
+		int start = renderDigits(unscaled, scale);
+		writeBytes(digits, start, digits.length - start);
+	}
+
+	// reuses the last rendering while the same instance keeps being written
+	private void writeDecimal(BigDecimal value, DecimalCache cache) throws IOException {
+		if (value != null && value == cache.value) {
+			writeBytes(cache.bytes, 0, cache.length);
+			return;
+		}
+		// make room first so the rendering lands in the buffer in one piece
+		if (buffer.length - count < cache.bytes.length) {
+			flushBuffer();
+		}
+		int before = count;
+		writeDecimal(value);
+		int length = count - before;
+		if (value == null || length < 0 || length > cache.bytes.length) {
+			cache.value = null;
+			return;
+		}
+		System.arraycopy(buffer, before, cache.bytes, 0, length);
+		cache.length = length;
+		cache.value = value;
+	}
+
+	// renders value / 10^scale into the end of digits, returning the start
+	private int renderDigits(long value, int scale) {
+		boolean negative = value < 0;
+		// work in negatives so Long.MIN_VALUE needs no special case
+		long v = negative ? value : -value;
+		int pos = digits.length;
+		int written = 0;
+		do {
+			digits[--pos] = (byte) ('0' - v % 10);
+			v /= 10;
+			if (++written == scale) {
+				digits[--pos] = '.';
+			}
+		} while (v != 0 || written < scale);
+		if (scale > 0 && written == scale) {
+			// no integer digits yet, 0.05 rather than .05
+			digits[--pos] = '0';
+		}
+		if (negative) {
+			digits[--pos] = '-';
+		}
+		return pos;
+	}
+
+	private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+		if (length > buffer.length - count) {
+			flushBuffer();
+			if (length > buffer.length) {
+				out.write(bytes, offset, length);
+				return;
+			}
+		}
+		System.arraycopy(bytes, offset, buffer, count, length);
+		count += length;
+	}
+
+	private void flushBuffer() throws IOException {
+		if (count > 0) {
+			out.write(buffer, 0, count);
+			count = 0;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		flushBuffer();
+		out.flush();
+	}
+
+	private static class DecimalCache {
+		private BigDecimal value;
+		private final byte[] bytes = new byte[24];
+		private int length;
+	}
+
+}
@@ -0,0 +1,484 @@
+package com.wileyedge.flooring.dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.wileyedge.flooring.model.Order;
+
+/// Durable log of order changes kept next to the order files
+/// a caller blocks until its record is on disk, records that arrive together
+/// share one fsync (group commit). A background task folds the journal into
+/// the Orders_*.txt files and any journal left over is replayed when opened
+public class OrderJournal {
+
+	static final String JOURNAL_FILE = "journal.log";
+	static final String COMPACTING_FILE = "journal.compacting";
+
+	// how often the background task folds the journal into the order files
+	private static final long COMPACT_INTERVAL_SECONDS = 5;
+
+	// one journal per order folder, shared by every Dao using the folder
+	private static final Map<File, OrderJournal> OPEN = new HashMap<>();
+
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MMddyyyy");
+
+	private final File folder;
+	private final File journalFile;
+	private final File compactingFile;
+	private FileChannel channel;
+
+	// guards the channel, taken before this when both are needed
+	private final Object channelLock = new Object();
+	// one compaction at a time
+	private final Object compactLock = new Object();
+	// readers of the order files share, writers of the order files are exclusive
+	private final ReadWriteLock fileLock = new ReentrantReadWriteLock();
+
+	// records being folded and records written since, both guarded by this
+	private List<JournalRecord> compacting = new ArrayList<>();
+	private List<JournalRecord> pending = new ArrayList<>();
+
+	private final BlockingQueue<PendingRecord> queue = new LinkedBlockingQueue<>();
+	// queued by close, the committer writes what is ahead of it then stops
+	private static final PendingRecord STOP = new PendingRecord(null);
+	private final Thread committer;
+	private final ScheduledExecutorService compactor;
+	private volatile Thread compactorThread;
+	private volatile boolean closed = false;
+
+	/// Gets the journal for an order folder, replaying and opening it the
+	/// first time it is used
+	public static OrderJournal open(File folder) throws IOException {
+		File key = folder.getAbsoluteFile();
+		synchronized (OPEN) {
+			OrderJournal journal = OPEN.get(key);
+			if (journal == null) {
+				journal = new OrderJournal(key);
+				OPEN.put(key, journal);
+			}
+			return journal;
+		}
+	}
+
+	private OrderJournal(File folder) throws IOException {
+		this.folder = folder;
+		this.journalFile = new File(folder, JOURNAL_FILE);
+		this.compactingFile = new File(folder, COMPACTING_FILE);
+
+		// replay whatever the last run did not get to fold
+		List<JournalRecord> leftover = new ArrayList<>();
+		leftover.addAll(readRecords(compactingFile));
+		leftover.addAll(readRecords(journalFile));
+		if (!leftover.isEmpty()) {
+			fold(leftover);
+		}
+		Files.deleteIfExists(journalFile.toPath());
+		Files.deleteIfExists(compactingFile.toPath());
+
+		channel = openChannel();
+
+		committer = new Thread(this::runCommitter, "order-journal-commit");
+		committer.setDaemon(true);
+		committer.start();
+
+		compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "order-journal-compact");
+			t.setDaemon(true);
+			compactorThread = t;
+			return t;
+		});
+		compactor.scheduleWithFixedDelay(() -> {
+			try {
+				compact();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}, COMPACT_INTERVAL_SECONDS, COMPACT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+	}
+
+	public void add(LocalDate date, Order order) {
+		commit(new JournalRecord('A', date, order, order.getOrderNumber()));
+	}
+
+	public void update(LocalDate date, Order order) {
+		commit(new JournalRecord('E', date, order, order.getOrderNumber()));
+	}
+
+	public void remove(LocalDate date, int orderNumber) {
+		commit(new JournalRecord('R', date, null, orderNumber));
+	}
+
+	// records that the order file for the date was rewritten in full,
+	// earlier records for that date no longer apply
+	// must be called while holding the write lock from getFileLock
+	public void saved(LocalDate date) {
+		commit(new JournalRecord('S', date, null, 0));
+	}
+
+	/// Lock that must be held while reading or writing the order files
+	public ReadWriteLock getFileLock() {
+		return fileLock;
+	}
+
+	// applies the journal records for a date on top of the orders read from
+	// its file, orders may be null if there is no file
+	public synchronized List<Order> apply(LocalDate date, List<Order> orders) {
+		List<JournalRecord> records = recordsFor(date);
+		if (records.isEmpty()) {
+			return orders;
+		}
+		List<Order> result = orders == null ? new ArrayList<>() : orders;
+		applyRecords(result, records);
+		return result;
+	}
+
+	// dates with changes that have not been folded into their files yet
+	public synchronized NavigableSet<LocalDate> getDates() {
+		NavigableSet<LocalDate> dates = new TreeSet<>();
+		compacting.forEach(r -> dates.add(r.date));
+		pending.forEach(r -> dates.add(r.date));
+		return dates;
+	}
+
+	public synchronized int getMaxOrderNumber() {
+		int max = 0;
+		for (JournalRecord r : compacting) {
+			max = Math.max(max, r.orderNumber);
+		}
+		for (JournalRecord r : pending) {
+			max = Math.max(max, r.orderNumber);
+		}
+		return max;
+	}
+
+	/// Folds everything written so far into the order files and empties the
+	/// journal, runs in the background but can be called directly
+	public void compact() throws IOException {
+		synchronized (compactLock) {
+			List<JournalRecord> segment;
+
+			// switch to a new journal file, the old one is kept until its
+			// records are safely in the order files
+			synchronized (channelLock) {
+				synchronized (this) {
+					if (!compacting.isEmpty()) {
+						// the last compaction failed part way, finish it first
+						segment = compacting;
+					} else if (pending.isEmpty()) {
+						return;
+					} else {
+						channel.close();
+						Files.move(journalFile.toPath(), compactingFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+						channel = openChannel();
+						compacting = pending;
+						pending = new ArrayList<>();
+						segment = compacting;
+					}
+				}
+			}
+
+			fold(segment);
+
+			synchronized (this) {
+				Files.deleteIfExists(compactingFile.toPath());
+				compacting = new ArrayList<>();
+			}
+		}
+	}
+
+	/// Writes the records still queued, folds the whole journal into the
+	/// order files and stops the background threads. The folder's next open
+	/// starts a new journal, this one takes no more changes
+	public void close() throws IOException {
+		synchronized (OPEN) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			queue.add(STOP);
+			compactor.shutdown();
+			try {
+				committer.join();
+				compactor.awaitTermination(1, TimeUnit.MINUTES);
+				Thread t = compactorThread;
+				if (t != null) {
+					t.join();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			// a commit that raced the stop is refused rather than left waiting
+			for (PendingRecord p = queue.poll(); p != null; p = queue.poll()) {
+				p.done.completeExceptionally(new IOException("The order journal is closed"));
+			}
+
+			compact();
+			synchronized (channelLock) {
+				channel.close();
+			}
+			Files.deleteIfExists(journalFile.toPath());
+			OPEN.remove(folder, this);
+		}
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	// writes the records to disk and waits until they are durable
+	private void commit(JournalRecord record) {
+		if (closed) {
+			throw new UncheckedIOException(new IOException("The order journal is closed"));
+		}
+		PendingRecord p = new PendingRecord(record);
+		queue.add(p);
+		try {
+			p.done.join();
+		} catch (CompletionException e) {
+			throw new UncheckedIOException("Could not write to the order journal", (IOException) e.getCause());
+		}
+	}
+
+	// single writer, everything waiting in the queue goes out with one fsync
+	private void runCommitter() {
+		List<PendingRecord> batch = new ArrayList<>();
+		while (true) {
+			try {
+				batch.add(queue.take());
+			} catch (InterruptedException e) {
+				return;
+			}
+			queue.drainTo(batch);
+			boolean stopping = batch.remove(STOP);
+
+			StringBuilder sb = new StringBuilder();
+			for (PendingRecord p : batch) {
+				sb.append(p.record.encode()).append('\n');
+			}
+			ByteBuffer buffer = StandardCharsets.UTF_8.encode(sb.toString());
+
+			try {
+				synchronized (channelLock) {
+					while (buffer.hasRemaining()) {
+						channel.write(buffer);
+					}
+					channel.force(false);
+
+					// visible to readers once durable, added under the channel lock so
+					// a rotation cant separate a record from the file it was written to
+					synchronized (this) {
+						for (PendingRecord p : batch) {
+							pending.add(p.record);
+						}
+					}
+				}
+				batch.forEach(p -> p.done.complete(null));
+			} catch (IOException e) {
+				batch.forEach(p -> p.done.completeExceptionally(e));
+			}
+			batch.clear();
+			if (stopping) {
+				return;
+			}
+		}
+	}
+
+	// applies a segment of records to the order files, one date at a time
+	// applying a record twice has no extra effect so a crash part way through
+	// can be replayed safely
+	private void fold(List<JournalRecord> segment) throws IOException {
+		Map<LocalDate, List<JournalRecord>> byDate = new TreeMap<>();
+		for (JournalRecord r : segment) {
+			List<JournalRecord> records = byDate.computeIfAbsent(r.date, d -> new ArrayList<>());
+			if (r.type == 'S') {
+				// the file already has everything up to a full save
+				records.clear();
+			} else {
+				records.add(r);
+			}
+		}
+
+		for (Map.Entry<LocalDate, List<JournalRecord>> entry : byDate.entrySet()) {
+			LocalDate date = entry.getKey();
+			if (entry.getValue().isEmpty()) {
+				continue;
+			}
+
+			fileLock.writeLock().lock();
+			try {
+				// the file was saved in full after this segment, it is already newer
+				if (savedSince(date)) {
+					continue;
+				}
+
+				File file = Dao.orderFile(folder, date);
+				boolean exists = file.exists();
+				List<Order> orders = exists ? Dao.readPartitionFile(file, date) : new ArrayList<>();
+				applyRecords(orders, entry.getValue());
+
+				if (exists || !orders.isEmpty()) {
+					Dao.writePartitionFile(file, orders, true);
+				}
+			} finally {
+				fileLock.writeLock().unlock();
+			}
+		}
+	}
+
+	private synchronized boolean savedSince(LocalDate date) {
+		for (JournalRecord r : pending) {
+			if (r.type == 'S' && r.date.equals(date)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// records for a date still to be folded, anything before a full save is dropped
+	private List<JournalRecord> recordsFor(LocalDate date) {
+		List<JournalRecord> records = new ArrayList<>();
+		for (List<JournalRecord> list : List.of(compacting, pending)) {
+			for (JournalRecord r : list) {
+				if (r.date.equals(date)) {
+					if (r.type == 'S') {
+						records.clear();
+					} else {
+						records.add(r);
+					}
+				}
+			}
+		}
+		return records;
+	}
+
+	// adds and edits replace any order with the same number, removes drop it
+	private static void applyRecords(List<Order> orders, List<JournalRecord> records) {
+		for (JournalRecord r : records) {
+			int index = -1;
+			for (int i = 0; i < orders.size(); i++) {
+				if (orders.get(i).getOrderNumber() == r.orderNumber) {
+					index = i;
+					break;
+				}
+			}
+
+			if (r.type == 'R') {
+				if (index >= 0) {
+					orders.remove(index);
+				}
+			} else if (index >= 0) {
+				orders.set(index, r.order);
+			} else {
+				orders.add(r.order);
+			}
+		}
+	}
+
+	private FileChannel openChannel() throws IOException {
+		return FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+	}
+
+	// reads the records in a journal file, a torn record at the end from a
+	// crash part way through a write is ignored
+	private static List<JournalRecord> readRecords(File file) throws IOException {
+		List<JournalRecord> records = new ArrayList<>();
+		if (!file.exists()) {
+			return records;
+		}
+
+		try (CsvReader reader = new CsvReader(file)) {
+			while (reader.nextLine()) {
+				try {
+					records.add(JournalRecord.decode(reader));
+				} catch (RuntimeException e) {
+					System.out.println("  * Ignoring damaged journal record: " + reader.getLine());
+					break;
+				}
+			}
+		}
+		return records;
+	}
+
+	// one change to an order
+	// A add, E edit, R remove, S the whole file for the date was saved
+	private static class JournalRecord {
+		private final char type;
+		private final LocalDate date;
+		private final Order order;
+		private final int orderNumber;
+
+		private JournalRecord(char type, LocalDate date, Order order, int orderNumber) {
+			this.type = type;
+			this.date = date;
+			this.order = order;
+			this.orderNumber = orderNumber;
+		}
+
+		private String encode() {
+			String prefix = type + "," + date.format(DATE_FORMAT);
+			switch (type) {
+			case 'A':
+			case 'E':
+				return prefix + "," + order.formatOrder();
+			case 'R':
+				return prefix + "," + orderNumber;
+			default:
+				return prefix;
+			}
+		}
+
+		private static JournalRecord decode(CsvReader reader) {
+			String type = reader.getString(0);
+			LocalDate date = LocalDate.parse(reader.getString(1), DATE_FORMAT);
+
+			switch (type) {
+			case "A":
+			case "E":
+				Order order = Dao.parseOrder(reader, 2, date, null);
+				return new JournalRecord(type.charAt(0), date, order, order.getOrderNumber());
+			case "R":
+				return new JournalRecord('R', date, null, reader.getInt(2));
+			case "S":
+				return new JournalRecord('S', date, null, 0);
+			default:
+				throw new IllegalArgumentException("Unknown journal record " + type);
+			}
+		}
+	}
+
+	private static class PendingRecord {
+		private final JournalRecord record;
+		private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+		private PendingRecord(JournalRecord record) {
+			this.record = record;
+		}
+	}
+
+}
@@ -0,0 +1,139 @@
+package com.wileyedge.flooring.dao;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/// Hands out order numbers from a high-water mark kept in the order folder.
+/// Numbers are reserved on file a block at a time (hi/lo) and then given out
+/// from memory, so most allocations are a single compare and set and the
+/// order files never need to be scanned to find the next number
+///
+/// numbers reserved but not used before a restart are skipped, order numbers
+/// are unique and increasing but may have gaps
+public class OrderSequence {
+
+	static final String SEQUENCE_FILE = "orders.sequence";
+
+	public static final int DEFAULT_BLOCK_SIZE = 1000;
+
+	// one sequence per folder however many daos use it
+	private static final Map<File, OrderSequence> OPEN = new HashMap<>();
+
+	private final File file;
+	private final int blockSize;
+	private final AtomicInteger next;
+	// first number not yet reserved on file, only ever grows
+	private volatile int limit;
+	// a lock rather than synchronized so a virtual thread waiting on the
+	// file write does not hold on to its carrier thread
+	private final ReentrantLock reserving = new ReentrantLock();
+
+	/// Gets the sequence for an order folder, reading its mark the first
+	/// time it is used. A folder without a mark yet starts after the number
+	/// from seed, which is only called then
+	public static OrderSequence open(File folder, IntSupplier seed) throws IOException {
+		File key = folder.getAbsoluteFile();
+		synchronized (OPEN) {
+			OrderSequence sequence = OPEN.get(key);
+			if (sequence == null) {
+				sequence = new OrderSequence(new File(key, SEQUENCE_FILE), DEFAULT_BLOCK_SIZE, seed);
+				OPEN.put(key, sequence);
+			}
+			return sequence;
+		}
+	}
+
+	OrderSequence(File file, int blockSize, IntSupplier seed) throws IOException {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("Block size must be at least 1");
+		}
+		this.file = file;
+		this.blockSize = blockSize;
+		int first = file.exists() ? readMark(file) : seed.getAsInt() + 1;
+		this.next = new AtomicInteger(first);
+		this.limit = first;
+	}
+
+	/// Takes count consecutive numbers and returns the first of them
+	/// throws UncheckedIOException if a new block cant be reserved
+	public int allocate(int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("Count must be at least 1");
+		}
+		while (true) {
+			int first = next.get();
+			int end = first + count;
+			if (end < first) {
+				throw new IllegalStateException("Order numbers exhausted");
+			}
+			if (end <= limit) {
+				if (next.compareAndSet(first, end)) {
+					return first;
+				}
+			} else {
+				reserve(end);
+			}
+		}
+	}
+
+	// the next number that would be given out
+	public int peek() {
+		return next.get();
+	}
+
+	// the mark on file, every number below it may have been given out
+	public int getReserved() {
+		return limit;
+	}
+
+	// moves the mark on file to at least end plus a block
+	// the mark is on disk before any number under it is given out
+	private void reserve(int end) {
+		reserving.lock();
+		try {
+			if (end <= limit) {
+				return;
+			}
+			int mark = (int) Math.min(Integer.MAX_VALUE, (long) end + blockSize);
+			writeMark(file, mark);
+			limit = mark;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			reserving.unlock();
+		}
+	}
+
+	private static int readMark(File file) throws IOException {
+		String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII).trim();
+		try {
+			return Integer.parseInt(text);
+		} catch (NumberFormatException e) {
+			throw new IOException("Bad order sequence file " + file.getName() + ": " + text);
+		}
+	}
+
+	private static void writeMark(File file, int mark) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		try (FileOutputStream out = new FileOutputStream(temp)) {
+			out.write(Integer.toString(mark).getBytes(StandardCharsets.US_ASCII));
+			out.getFD().sync();
+		} catch (IOException e) {
+			Files.deleteIfExists(temp.toPath());
+			throw e;
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+}
@@ -0,0 +1,207 @@
+package com.wileyedge.flooring.dao;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.wileyedge.flooring.model.Order;
+
+/// Compact binary copy of the order files, read at startup instead of parsing
+/// every CSV file. The CSV files stay the source of truth, a date is only taken
+/// from the snapshot when its file has not changed since the snapshot was written
+///
+/// money and other decimals are stored as a scaled long (unscaled value and
+/// scale), states and product types as ids into a dictionary at the top
+class OrderSnapshot {
+
+	static final String SNAPSHOT_FILE = "orders.snapshot";
+
+	private static final int MAGIC = 0x464D5331; // FMS1
+	private static final int VERSION = 1;
+
+	// what the snapshot knows about one order file
+	static class Partition {
+		final LocalDate date;
+		final long modified;
+		final long size;
+		final long checksum;
+		final List<Order> orders;
+
+		Partition(LocalDate date, long modified, long size, long checksum, List<Order> orders) {
+			this.date = date;
+			this.modified = modified;
+			this.size = size;
+			this.checksum = checksum;
+			this.orders = orders;
+		}
+	}
+
+	private OrderSnapshot() {
+	}
+
+	// reads a snapshot, an empty map if there is none or it cant be used
+	// repeated fields are shared through the dictionary when one is given
+	static Map<LocalDate, Partition> read(File file, FieldDictionary dictionary) {
+		Map<LocalDate, Partition> partitions = new HashMap<>();
+		if (!file.exists()) {
+			return partitions;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return partitions;
+			}
+
+			String[] states = readDictionary(in, dictionary);
+			String[] products = readDictionary(in, dictionary);
+
+			int partitionCount = in.readInt();
+			for (int p = 0; p < partitionCount; p++) {
+				LocalDate date = LocalDate.ofEpochDay(in.readInt());
+				long modified = in.readLong();
+				long size = in.readLong();
+				long checksum = in.readLong();
+				int orderCount = in.readInt();
+
+				List<Order> orders = new ArrayList<>(orderCount);
+				for (int o = 0; o < orderCount; o++) {
+					int orderNumber = in.readInt();
+					String customerName = in.readUTF();
+					String state = states[in.readShort()];
+					BigDecimal taxRate = canonical(readDecimal(in), dictionary);
+					String productType = products[in.readShort()];
+					BigDecimal area = readDecimal(in);
+					BigDecimal costPerSquareFoot = canonical(readDecimal(in), dictionary);
+					BigDecimal labourCostPerSquareFoot = canonical(readDecimal(in), dictionary);
+					BigDecimal materialCost = readDecimal(in);
+					BigDecimal labourCost = readDecimal(in);
+					BigDecimal tax = readDecimal(in);
+					BigDecimal total = readDecimal(in);
+
+					orders.add(new Order(date, orderNumber, customerName, state, taxRate, productType, area,
+							costPerSquareFoot, labourCostPerSquareFoot, materialCost, labourCost, tax, total));
+				}
+				partitions.put(date, new Partition(date, modified, size, checksum, orders));
+			}
+		} catch (Exception e) {
+			// a damaged snapshot just means parsing the CSV files
+			System.out.println("  * Ignoring order snapshot: " + e);
+			partitions.clear();
+		}
+		return partitions;
+	}
+
+	// writes a new snapshot next to the old one and swaps it in
+	static void write(File file, Collection<Partition> partitions) throws IOException {
+
+		// build the dictionaries
+		Map<String, Integer> states = new HashMap<>();
+		Map<String, Integer> products = new HashMap<>();
+		for (Partition p : partitions) {
+			for (Order o : p.orders) {
+				states.putIfAbsent(o.getState(), states.size());
+				products.putIfAbsent(o.getProductType(), products.size());
+			}
+		}
+		if (states.size() > Short.MAX_VALUE || products.size() > Short.MAX_VALUE) {
+			throw new IOException("Too many distinct states or products for a snapshot");
+		}
+
+		File temp = new File(file.getPath() + ".tmp");
+		try (FileOutputStream fileOut = new FileOutputStream(temp);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeDictionary(out, states);
+			writeDictionary(out, products);
+
+			out.writeInt(partitions.size());
+			for (Partition p : partitions) {
+				out.writeInt((int) p.date.toEpochDay());
+				out.writeLong(p.modified);
+				out.writeLong(p.size);
+				out.writeLong(p.checksum);
+				out.writeInt(p.orders.size());
+
+				for (Order o : p.orders) {
+					out.writeInt(o.getOrderNumber());
+					out.writeUTF(o.getCustomerName());
+					out.writeShort(states.get(o.getState()));
+					writeDecimal(out, o.getTaxRate());
+					out.writeShort(products.get(o.getProductType()));
+					writeDecimal(out, o.getArea());
+					writeDecimal(out, o.getCostPerSquareFoot());
+					writeDecimal(out, o.getLabourCostPerSquareFoot());
+					writeDecimal(out, o.getMaterialCost());
+					writeDecimal(out, o.getLabourCost());
+					writeDecimal(out, o.getTax());
+					writeDecimal(out, o.getTotal());
+				}
+			}
+			out.flush();
+			fileOut.getFD().sync();
+		} catch (IOException e) {
+			Files.deleteIfExists(temp.toPath());
+			throw e;
+		}
+
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static String[] readDictionary(DataInputStream in, FieldDictionary dictionary) throws IOException {
+		String[] values = new String[in.readInt()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = in.readUTF();
+			if (dictionary != null) {
+				values[i] = dictionary.canonical(values[i]);
+			}
+		}
+		return values;
+	}
+
+	private static BigDecimal canonical(BigDecimal value, FieldDictionary dictionary) {
+		return dictionary == null ? value : dictionary.canonical(value);
+	}
+
+	private static void writeDictionary(DataOutputStream out, Map<String, Integer> dictionary) throws IOException {
+		String[] values = new String[dictionary.size()];
+		dictionary.forEach((value, id) -> values[id] = value);
+		out.writeInt(values.length);
+		for (String value : values) {
+			out.writeUTF(value);
+		}
+	}
+
+	// the scale is kept so 100 and 100.00 come back exactly as they were
+	private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+		long unscaled = in.readLong();
+		int scale = in.readByte();
+		return BigDecimal.valueOf(unscaled, scale);
+	}
+
+	private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+		BigInteger unscaled = value.unscaledValue();
+		if (unscaled.bitLength() > 63 || value.scale() > Byte.MAX_VALUE || value.scale() < Byte.MIN_VALUE) {
+			throw new IOException("Value too large for a snapshot: " + value);
+		}
+		out.writeLong(unscaled.longValue());
+		out.writeByte(value.scale());
+	}
+
+}
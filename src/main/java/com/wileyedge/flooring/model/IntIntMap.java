@@ -0,0 +1,142 @@
+package com.wileyedge.flooring.model;
+
+import java.util.Arrays;
+
+/// Hash map from int to int without boxing, open addressing with linear
+/// probing so removes need no tombstones
+public class IntIntMap {
+
+	/// Returned by get when the key is not in the map
+	public static final int NO_VALUE = Integer.MIN_VALUE;
+
+	private int[] keys;
+	private int[] values;
+	private boolean[] used;
+	private int size = 0;
+	private int mask;
+
+	public IntIntMap() {
+		this(16);
+	}
+
+	public IntIntMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(expected, 4) * 2 - 1) << 1;
+		allocate(capacity);
+	}
+
+	// a map with the same entries that changes independently of this one
+	public IntIntMap copy() {
+		IntIntMap copy = new IntIntMap(0);
+		copy.keys = keys.clone();
+		copy.values = values.clone();
+		copy.used = used.clone();
+		copy.size = size;
+		copy.mask = mask;
+		return copy;
+	}
+
+	public int get(int key) {
+		for (int i = slot(key);; i = (i + 1) & mask) {
+			if (!used[i]) {
+				return NO_VALUE;
+			}
+			if (keys[i] == key) {
+				return values[i];
+			}
+		}
+	}
+
+	// returns the old value, NO_VALUE if the key is new
+	public int put(int key, int value) {
+		int i = slot(key);
+		for (; used[i]; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				int old = values[i];
+				values[i] = value;
+				return old;
+			}
+		}
+		keys[i] = key;
+		values[i] = value;
+		used[i] = true;
+		if (++size * 2 > keys.length) {
+			rehash(keys.length * 2);
+		}
+		return NO_VALUE;
+	}
+
+	// returns the removed value, NO_VALUE if the key was not there
+	public int remove(int key) {
+		int i = slot(key);
+		for (; used[i]; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				int old = values[i];
+				shiftBack(i);
+				size--;
+				return old;
+			}
+		}
+		return NO_VALUE;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	// moves later entries of the probe run back over the removed slot so
+	// lookups never stop early at a gap
+	private void shiftBack(int gap) {
+		int i = gap;
+		while (true) {
+			i = (i + 1) & mask;
+			if (!used[i]) {
+				break;
+			}
+			int home = slot(keys[i]);
+			// leave entries whose home is between the gap and where they are
+			if (((i - home) & mask) >= ((i - gap) & mask)) {
+				keys[gap] = keys[i];
+				values[gap] = values[i];
+				gap = i;
+			}
+		}
+		used[gap] = false;
+	}
+
+	private int slot(int key) {
+		// spread the bits, order numbers are sequential
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUsed[i]) {
+				int j = slot(oldKeys[i]);
+				while (used[j]) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+				used[j] = true;
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+	}
+
+}
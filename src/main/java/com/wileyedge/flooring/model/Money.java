@@ -0,0 +1,54 @@
+package com.wileyedge.flooring.model;
+
+import java.math.BigDecimal;
+
+/// Fixed point money arithmetic on longs
+/// amounts are held in hundredths (cents for money, hundredths of a square
+/// foot for area, hundredths of a percent for tax rates) and every result is
+/// rounded HALF_UP to the cent, the same as setScale(2, RoundingMode.HALF_UP)
+public final class Money {
+
+	/// Returned by toUnits when a value cant be held exactly in hundredths
+	public static final long NOT_EXACT = Long.MIN_VALUE;
+
+	private Money() {
+	}
+
+	/// Converts a value to hundredths, NOT_EXACT if it is null, has more than
+	/// two decimal places or is too large
+	public static long toUnits(BigDecimal value) {
+		if (value == null) {
+			return NOT_EXACT;
+		}
+		try {
+			return value.movePointRight(2).longValueExact();
+		} catch (ArithmeticException e) {
+			return NOT_EXACT;
+		}
+	}
+
+	public static BigDecimal toBigDecimal(long cents) {
+		return BigDecimal.valueOf(cents, 2);
+	}
+
+	/// a * b where both are in hundredths, rounded to the cent
+	public static long multiply(long a, long b) {
+		return divideHalfUp(Math.multiplyExact(a, b), 100);
+	}
+
+	/// rate percent of an amount, the rate in hundredths of a percent
+	public static long percentOf(long cents, long rate) {
+		return divideHalfUp(Math.multiplyExact(cents, rate), 10_000);
+	}
+
+	/// n / d rounding halves away from zero like RoundingMode.HALF_UP
+	static long divideHalfUp(long n, long d) {
+		long q = n / d;
+		long r = n % d;
+		if (Math.abs(r) * 2 >= d) {
+			q += n < 0 ? -1 : 1;
+		}
+		return q;
+	}
+
+}
@@ -6,6 +6,8 @@ import java.time.LocalDate;
 
 public class Order {
 
+	private static final BigDecimal HUNDRED = new BigDecimal("100");
+
 	private int orderNumber;
 	private LocalDate orderDate;
 	private String customerName;
@@ -20,13 +22,28 @@ public class Order {
 	private BigDecimal tax;
 	private BigDecimal total;
 
+	// the pricing inputs in hundredths, Money.NOT_EXACT when a value cant be
+	// held that way and pricing has to use BigDecimal
+	private long areaUnits = Money.NOT_EXACT;
+	private long taxRateUnits = Money.NOT_EXACT;
+	private long costUnits = Money.NOT_EXACT;
+	private long labourCostUnits = Money.NOT_EXACT;
+
+	// results of fixed point pricing in cents, the BigDecimal fields above
+	// are only built from them when they are asked for
+	private boolean pricedInCents = false;
+	private long materialCents;
+	private long labourCents;
+	private long taxCents;
+	private long totalCents;
+
 	public Order(LocalDate orderDate, String customerName, String state, String productType, BigDecimal area) {
 		super();
 		this.orderDate = orderDate;
 		this.customerName = customerName;
 		this.state = state;
 		this.productType = productType;
-		this.area = area;
+		setArea(area);
 	}
 
 	public Order(LocalDate orderDate, int orderNumber, String customerName, String state, BigDecimal taxRate,
@@ -46,6 +63,10 @@ public class Order {
 		this.labourCost = labourCost;
 		this.tax = tax;
 		this.total = total;
+		this.areaUnits = Money.toUnits(area);
+		this.taxRateUnits = Money.toUnits(taxRate);
+		this.costUnits = Money.toUnits(costPerSquareFoot);
+		this.labourCostUnits = Money.toUnits(labourCostPerSquareFoot);
 	}
 
 	public LocalDate getOrderDate() {
@@ -72,6 +93,46 @@ public class Order {
 		return area;
 	}
 
+	public BigDecimal getTaxRate() {
+		return taxRate;
+	}
+
+	public BigDecimal getCostPerSquareFoot() {
+		return costPerSquareFoot;
+	}
+
+	public BigDecimal getLabourCostPerSquareFoot() {
+		return labourCostPerSquareFoot;
+	}
+
+	public BigDecimal getMaterialCost() {
+		if (materialCost == null && pricedInCents) {
+			materialCost = Money.toBigDecimal(materialCents);
+		}
+		return materialCost;
+	}
+
+	public BigDecimal getLabourCost() {
+		if (labourCost == null && pricedInCents) {
+			labourCost = Money.toBigDecimal(labourCents);
+		}
+		return labourCost;
+	}
+
+	public BigDecimal getTax() {
+		if (tax == null && pricedInCents) {
+			tax = Money.toBigDecimal(taxCents);
+		}
+		return tax;
+	}
+
+	public BigDecimal getTotal() {
+		if (total == null && pricedInCents) {
+			total = Money.toBigDecimal(totalCents);
+		}
+		return total;
+	}
+
 	public void setOrderNumber(int orderNumber) {
 		this.orderNumber = orderNumber;
 	}
@@ -90,10 +151,12 @@ public class Order {
 
 	public void setTaxRate(BigDecimal taxRate) {
 		this.taxRate = taxRate;
+		this.taxRateUnits = Money.toUnits(taxRate);
 	}
 
 	public void setArea(BigDecimal area) {
 		this.area = area;
+		this.areaUnits = Money.toUnits(area);
 	}
 
 	private void calcMaterialCost() {
@@ -107,7 +170,7 @@ public class Order {
 	}
 
 	private void calcTax() {
-		BigDecimal tax = this.materialCost.add(labourCost).multiply(this.taxRate.divide(new BigDecimal("100")))
+		BigDecimal tax = this.materialCost.add(labourCost).multiply(this.taxRate.divide(HUNDRED))
 				.setScale(2, RoundingMode.HALF_UP);
 		this.tax = tax;
 	}
@@ -117,7 +180,34 @@ public class Order {
 		this.total = total;
 	}
 
+	// prices the order in whole cents on longs, nothing is allocated
+	// falls back to BigDecimal for values with more than two decimal places
+	// or too large for a long, both give the same result to the cent
 	public void updateDetails() {
+		if (areaUnits != Money.NOT_EXACT && costUnits != Money.NOT_EXACT && labourCostUnits != Money.NOT_EXACT
+				&& taxRateUnits != Money.NOT_EXACT) {
+			try {
+				long material = Money.multiply(areaUnits, costUnits);
+				long labour = Money.multiply(areaUnits, labourCostUnits);
+				long costs = Math.addExact(material, labour);
+				long orderTax = Money.percentOf(costs, taxRateUnits);
+
+				this.totalCents = Math.addExact(costs, orderTax);
+				this.materialCents = material;
+				this.labourCents = labour;
+				this.taxCents = orderTax;
+				this.pricedInCents = true;
+				this.materialCost = null;
+				this.labourCost = null;
+				this.tax = null;
+				this.total = null;
+				return;
+			} catch (ArithmeticException e) {
+				// too large for a long, use BigDecimal
+			}
+		}
+
+		this.pricedInCents = false;
 		calcMaterialCost();
 		calcLabourCost();
 		calcTax();
@@ -128,6 +218,8 @@ public class Order {
 		this.productType = p.getProductType();
 		this.labourCostPerSquareFoot = p.getLabourCostPerSquareFoot();
 		this.costPerSquareFoot = p.getCostPerSquareFoot();
+		this.labourCostUnits = Money.toUnits(labourCostPerSquareFoot);
+		this.costUnits = Money.toUnits(costPerSquareFoot);
 	}
 
 	@Override
@@ -135,8 +227,8 @@ public class Order {
 		return "  * Order Date:  " + orderDate + " | Order Number: " + orderNumber + " | Customer Name: " + customerName
 				+ " | State: " + state + " | Tax Rate: " + taxRate + " | Product Type: " + productType + " | Area: "
 				+ area + "ft^2 | Cost Per Square Foot: $" + costPerSquareFoot + " | Labour Cost Per Square Foot: $"
-				+ labourCostPerSquareFoot + " | Material Cost: $" + materialCost + " | Labour Cost: $" + labourCost
-				+ " | Tax: $" + tax + " | Total: $" + total;
+				+ labourCostPerSquareFoot + " | Material Cost: $" + getMaterialCost() + " | Labour Cost: $" + getLabourCost()
+				+ " | Tax: $" + getTax() + " | Total: $" + getTotal();
 	}
 
 	public String showDetails() {
@@ -144,14 +236,14 @@ public class Order {
 				+ state + "\r\n  * | Tax Rate: " + taxRate + "\r\n  * | Product Type: " + productType
 				+ "\r\n  * | Area: " + area + " ft^2 \r\n  * | Cost Per Square Foot: $" + costPerSquareFoot
 				+ "\r\n  * | Labour Cost Per Square Foot: $" + labourCostPerSquareFoot + "\r\n  * | Material Cost: $"
-				+ materialCost + "\r\n  * | Labour Cost: $" + labourCost + "\r\n  * | Tax: $" + tax
-				+ "\r\n  * | Total: $" + total;
+				+ getMaterialCost() + "\r\n  * | Labour Cost: $" + getLabourCost() + "\r\n  * | Tax: $" + getTax()
+				+ "\r\n  * | Total: $" + getTotal();
 	}
 
 	public String formatOrder() {
 		return orderNumber + "," + customerName + "," + state + "," + taxRate + "," + productType + "," + area + ","
-				+ costPerSquareFoot + "," + labourCostPerSquareFoot + "," + materialCost + "," + labourCost + "," + tax
-				+ "," + total;
+				+ costPerSquareFoot + "," + labourCostPerSquareFoot + "," + getMaterialCost() + "," + getLabourCost() + "," + getTax()
+				+ "," + getTotal();
 	}
 
 }
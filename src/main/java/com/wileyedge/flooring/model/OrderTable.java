@@ -0,0 +1,548 @@
+package com.wileyedge.flooring.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/// The orders for one date stored column by column in primitive arrays
+/// instead of as Order objects. Decimals are kept as an unscaled long and a
+/// scale so they come back exactly as they went in, states and product
+/// types as ids into dictionaries shared between tables
+///
+/// Order objects are only built when a row is read. Orders are found by
+/// number through a hash index and removed rows are only marked, the
+/// table is compacted once they make up half of it
+///
+/// a table is not safe to change while another thread reads it, the service
+/// changes a copy and publishes that in place of the old table. Rows and the
+/// index are held in chunks the copy shares with the table it came from, a
+/// chunk is only copied the first time the copy changes it so a change
+/// costs a chunk rather than the whole day
+public class OrderTable {
+
+	// decimal columns
+	private static final int TAX_RATE = 0;
+	private static final int AREA = 1;
+	private static final int COST_PER_SQUARE_FOOT = 2;
+	private static final int LABOUR_COST_PER_SQUARE_FOOT = 3;
+	private static final int MATERIAL_COST = 4;
+	private static final int LABOUR_COST = 5;
+	private static final int TAX = 6;
+	private static final int TOTAL = 7;
+	private static final int DECIMAL_COLUMNS = 8;
+
+	// scale marking a value that is null or wont fit in a long, it is kept in
+	// the oversized column instead
+	private static final byte OVERSIZED = Byte.MIN_VALUE;
+
+	// matches every state or product type in findRows
+	public static final int ANY = Integer.MIN_VALUE;
+
+	// removed rows are not compacted away until there are at least this many
+	private static final int MIN_COMPACT = 32;
+
+	// rows per chunk, row r is slot r & CHUNK_MASK of chunk r >>> CHUNK_BITS
+	private static final int CHUNK_BITS = 6;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	// order numbers per part of the index, the index is split again once
+	// its parts hold four times this many
+	private static final int INDEX_PART_SIZE = 64;
+
+	private final int epochDay;
+	private final StringDictionary states;
+	private final StringDictionary productTypes;
+
+	// rows in use including removed ones
+	private int rows = 0;
+	private int removedCount = 0;
+	private Chunk[] chunks;
+	// false for a chunk shared with another table, it is copied before it
+	// is changed
+	private boolean[] ownedChunks;
+
+	// order number to row, split into parts by the number's hash so a change
+	// copies one part. files with repeated numbers fall back to scanning
+	private IntIntMap[] index;
+	private boolean[] ownedIndex;
+	private int indexBits;
+	private boolean duplicateNumbers = false;
+
+	public OrderTable(LocalDate date, StringDictionary states, StringDictionary productTypes) {
+		this(date, states, productTypes, 8);
+	}
+
+	public OrderTable(LocalDate date, StringDictionary states, StringDictionary productTypes, int capacity) {
+		this.epochDay = (int) date.toEpochDay();
+		this.states = states;
+		this.productTypes = productTypes;
+		capacity = Math.max(capacity, 1);
+		int chunkCount = (capacity + CHUNK_MASK) >>> CHUNK_BITS;
+		chunks = new Chunk[chunkCount];
+		ownedChunks = new boolean[chunkCount];
+		for (int c = 0; c < chunkCount; c++) {
+			chunks[c] = new Chunk(Math.min(CHUNK_SIZE, capacity - (c << CHUNK_BITS)));
+			ownedChunks[c] = true;
+		}
+		allocateIndex(capacity);
+	}
+
+	// a table of the same rows sharing this one's chunks
+	private OrderTable(OrderTable from) {
+		this.epochDay = from.epochDay;
+		this.states = from.states;
+		this.productTypes = from.productTypes;
+		this.rows = from.rows;
+		this.removedCount = from.removedCount;
+		this.chunks = from.chunks.clone();
+		this.ownedChunks = new boolean[chunks.length];
+		this.index = from.index.clone();
+		this.ownedIndex = new boolean[index.length];
+		this.indexBits = from.indexBits;
+		this.duplicateNumbers = from.duplicateNumbers;
+	}
+
+	// a table holding a copy of the orders
+	public static OrderTable of(LocalDate date, Collection<Order> orders, StringDictionary states,
+			StringDictionary productTypes) {
+		OrderTable table = new OrderTable(date, states, productTypes, orders.size());
+		for (Order o : orders) {
+			table.add(o);
+		}
+		return table;
+	}
+
+	public LocalDate getDate() {
+		return LocalDate.ofEpochDay(epochDay);
+	}
+
+	public int size() {
+		return rows - removedCount;
+	}
+
+	public int getOrderNumber(int row) {
+		checkRow(row);
+		return chunks[row >>> CHUNK_BITS].orderNumbers[row & CHUNK_MASK];
+	}
+
+	// the order numbers of every order in the table
+	public int[] getOrderNumbers() {
+		int[] numbers = new int[size()];
+		int i = 0;
+		for (int row = 0; row < rows; row++) {
+			Chunk chunk = chunks[row >>> CHUNK_BITS];
+			if (!chunk.removed[row & CHUNK_MASK]) {
+				numbers[i++] = chunk.orderNumbers[row & CHUNK_MASK];
+			}
+		}
+		return numbers;
+	}
+
+	// the row holding an order, -1 if it is not in the table
+	// rows are only valid until the next add or remove
+	public int indexOf(int orderNumber) {
+		if (duplicateNumbers) {
+			for (int row = 0; row < rows; row++) {
+				Chunk chunk = chunks[row >>> CHUNK_BITS];
+				int slot = row & CHUNK_MASK;
+				if (!chunk.removed[slot] && chunk.orderNumbers[slot] == orderNumber) {
+					return row;
+				}
+			}
+			return -1;
+		}
+		int row = index[part(orderNumber)].get(orderNumber);
+		return row == IntIntMap.NO_VALUE ? -1 : row;
+	}
+
+	public void add(Order order) {
+		int row = rows;
+		Chunk chunk = writable(row);
+		write(chunk, row & CHUNK_MASK, order);
+		rows++;
+		if (rows > (index.length * INDEX_PART_SIZE) << 2) {
+			reindex();
+		} else {
+			index(row, order.getOrderNumber());
+		}
+	}
+
+	public void set(int row, Order order) {
+		checkRow(row);
+		Chunk chunk = writable(row);
+		int slot = row & CHUNK_MASK;
+		int old = chunk.orderNumbers[slot];
+		write(chunk, slot, order);
+		if (old != order.getOrderNumber()) {
+			unindex(old, row);
+			index(row, order.getOrderNumber());
+		}
+	}
+
+	public void remove(int row) {
+		checkRow(row);
+		Chunk chunk = writable(row);
+		int slot = row & CHUNK_MASK;
+		chunk.removed[slot] = true;
+		removedCount++;
+		unindex(chunk.orderNumbers[slot], row);
+		chunk.customerNames[slot] = null;
+		if (chunk.oversized != null) {
+			chunk.oversized[slot] = null;
+		}
+
+		if (removedCount >= MIN_COMPACT && removedCount * 2 > rows) {
+			compact();
+		}
+	}
+
+	// builds the order held in a row
+	public Order get(int row) {
+		checkRow(row);
+		Chunk c = chunks[row >>> CHUNK_BITS];
+		int slot = row & CHUNK_MASK;
+		return new Order(getDate(), c.orderNumbers[slot], c.customerNames[slot], states.valueOf(c.stateIds[slot]),
+				c.decimal(slot, TAX_RATE), productTypes.valueOf(c.productTypeIds[slot]), c.decimal(slot, AREA),
+				c.decimal(slot, COST_PER_SQUARE_FOOT), c.decimal(slot, LABOUR_COST_PER_SQUARE_FOOT),
+				c.decimal(slot, MATERIAL_COST), c.decimal(slot, LABOUR_COST), c.decimal(slot, TAX),
+				c.decimal(slot, TOTAL));
+	}
+
+	// rows with the state and product type ids given, either can be ANY
+	// in order number order so a query can carry on after a number
+	public int[] findRows(int stateId, int productTypeId) {
+		long[] found = new long[size()];
+		int count = 0;
+		for (int row = 0; row < rows; row++) {
+			Chunk chunk = chunks[row >>> CHUNK_BITS];
+			int slot = row & CHUNK_MASK;
+			if (chunk.removed[slot] || (stateId != ANY && chunk.stateIds[slot] != stateId)
+					|| (productTypeId != ANY && chunk.productTypeIds[slot] != productTypeId)) {
+				continue;
+			}
+			// number in the high half so sorting sorts by number
+			found[count++] = ((long) chunk.orderNumbers[slot] << 32) | row;
+		}
+		Arrays.sort(found, 0, count);
+		int[] result = new int[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = (int) found[i];
+		}
+		return result;
+	}
+
+	// rows whose tax rate or per square foot costs differ from the rates
+	// given, each rate array is indexed by state or product type id and a
+	// null rate (an unknown state or product) leaves the row alone
+	public int[] findRowsToReprice(BigDecimal[] taxRateByState, BigDecimal[] costByProduct,
+			BigDecimal[] labourCostByProduct) {
+		int[] found = new int[16];
+		int count = 0;
+		for (int row = 0; row < rows; row++) {
+			Chunk chunk = chunks[row >>> CHUNK_BITS];
+			int slot = row & CHUNK_MASK;
+			if (chunk.removed[slot]) {
+				continue;
+			}
+			BigDecimal rate = lookup(taxRateByState, chunk.stateIds[slot]);
+			BigDecimal cost = lookup(costByProduct, chunk.productTypeIds[slot]);
+			BigDecimal labourCost = lookup(labourCostByProduct, chunk.productTypeIds[slot]);
+			if (rate == null || cost == null || labourCost == null) {
+				continue;
+			}
+			if (chunk.differs(slot, TAX_RATE, rate) || chunk.differs(slot, COST_PER_SQUARE_FOOT, cost)
+					|| chunk.differs(slot, LABOUR_COST_PER_SQUARE_FOOT, labourCost)) {
+				if (count == found.length) {
+					found = Arrays.copyOf(found, count * 2);
+				}
+				found[count++] = row;
+			}
+		}
+		return Arrays.copyOf(found, count);
+	}
+
+	private static BigDecimal lookup(BigDecimal[] values, int id) {
+		return id >= 0 && id < values.length ? values[id] : null;
+	}
+
+	// a table of the same orders to change instead of this one, rows keep
+	// their numbers
+	// only the arrays of chunk and index parts are copied, the chunks and
+	// parts themselves are shared and copied by whichever table changes
+	// one first. neither table owns them afterwards, so changing this table
+	// later leaves the copy alone too
+	public OrderTable copy() {
+		Arrays.fill(ownedChunks, false);
+		Arrays.fill(ownedIndex, false);
+		return new OrderTable(this);
+	}
+
+	// a copy of every order in the table
+	public List<Order> toList() {
+		List<Order> orders = new ArrayList<>(size());
+		for (int row = 0; row < rows; row++) {
+			if (!chunks[row >>> CHUNK_BITS].removed[row & CHUNK_MASK]) {
+				orders.add(get(row));
+			}
+		}
+		return orders;
+	}
+
+	// read only view that builds each order as it is read, for passing a
+	// table to code that walks it once such as the export
+	// never changes the table so it can be read while others read it, a
+	// table with removed rows is copied instead
+	public List<Order> asList() {
+		if (removedCount > 0) {
+			return toList();
+		}
+		return new AbstractList<Order>() {
+			@Override
+			public Order get(int index) {
+				return OrderTable.this.get(index);
+			}
+
+			@Override
+			public int size() {
+				return rows;
+			}
+		};
+	}
+
+	// the chunk holding row ready to be changed, a shared chunk is copied
+	// first and a short one grown
+	private Chunk writable(int row) {
+		int c = row >>> CHUNK_BITS;
+		int slot = row & CHUNK_MASK;
+		if (c == chunks.length) {
+			chunks = Arrays.copyOf(chunks, c * 2);
+			ownedChunks = Arrays.copyOf(ownedChunks, c * 2);
+		}
+		Chunk chunk = chunks[c];
+		if (chunk == null) {
+			// rows are only added at the end so a new chunk starts at slot 0
+			chunk = new Chunk(8);
+			chunks[c] = chunk;
+			ownedChunks[c] = true;
+			return chunk;
+		}
+		if (ownedChunks[c] && slot < chunk.capacity()) {
+			return chunk;
+		}
+		int capacity = chunk.capacity();
+		while (capacity <= slot) {
+			capacity = Math.min(CHUNK_SIZE, capacity * 2);
+		}
+		chunk = chunk.copy(capacity);
+		chunks[c] = chunk;
+		ownedChunks[c] = true;
+		return chunk;
+	}
+
+	private int part(int orderNumber) {
+		return indexBits == 0 ? 0 : (orderNumber * 0x9E3779B9) >>> (32 - indexBits);
+	}
+
+	// the index part holding orderNumber ready to be changed
+	private IntIntMap writableIndex(int orderNumber) {
+		int p = part(orderNumber);
+		if (!ownedIndex[p]) {
+			index[p] = index[p].copy();
+			ownedIndex[p] = true;
+		}
+		return index[p];
+	}
+
+	private void index(int row, int orderNumber) {
+		if (writableIndex(orderNumber).put(orderNumber, row) != IntIntMap.NO_VALUE) {
+			duplicateNumbers = true;
+		}
+	}
+
+	private void unindex(int orderNumber, int row) {
+		if (index[part(orderNumber)].get(orderNumber) == row) {
+			writableIndex(orderNumber).remove(orderNumber);
+		}
+	}
+
+	// enough index parts for expected numbers, all empty
+	private void allocateIndex(int expected) {
+		int parts = Integer.highestOneBit(Math.max(1, expected / INDEX_PART_SIZE));
+		indexBits = Integer.numberOfTrailingZeros(parts);
+		index = new IntIntMap[parts];
+		ownedIndex = new boolean[parts];
+		for (int p = 0; p < parts; p++) {
+			index[p] = new IntIntMap(Math.min(expected, INDEX_PART_SIZE));
+			ownedIndex[p] = true;
+		}
+	}
+
+	// indexes every row again, into more parts once the table has grown
+	private void reindex() {
+		allocateIndex(size());
+		duplicateNumbers = false;
+		for (int row = 0; row < rows; row++) {
+			Chunk chunk = chunks[row >>> CHUNK_BITS];
+			if (!chunk.removed[row & CHUNK_MASK]) {
+				index(row, chunk.orderNumbers[row & CHUNK_MASK]);
+			}
+		}
+	}
+
+	// moves the remaining rows down over the removed ones into new chunks
+	private void compact() {
+		Chunk[] old = chunks;
+		int oldRows = rows;
+		chunks = new Chunk[Math.max(1, (size() + CHUNK_MASK) >>> CHUNK_BITS)];
+		ownedChunks = new boolean[chunks.length];
+		rows = 0;
+		for (int from = 0; from < oldRows; from++) {
+			Chunk chunk = old[from >>> CHUNK_BITS];
+			if (!chunk.removed[from & CHUNK_MASK]) {
+				int to = rows++;
+				chunk.copyRow(from & CHUNK_MASK, writable(to), to & CHUNK_MASK);
+			}
+		}
+		removedCount = 0;
+		reindex();
+	}
+
+	private void write(Chunk chunk, int slot, Order o) {
+		chunk.orderNumbers[slot] = o.getOrderNumber();
+		chunk.removed[slot] = false;
+		chunk.customerNames[slot] = o.getCustomerName();
+		chunk.stateIds[slot] = toShort(states.idOf(o.getState()));
+		chunk.productTypeIds[slot] = toShort(productTypes.idOf(o.getProductType()));
+		if (chunk.oversized != null) {
+			chunk.oversized[slot] = null;
+		}
+		chunk.setDecimal(slot, TAX_RATE, o.getTaxRate());
+		chunk.setDecimal(slot, AREA, o.getArea());
+		chunk.setDecimal(slot, COST_PER_SQUARE_FOOT, o.getCostPerSquareFoot());
+		chunk.setDecimal(slot, LABOUR_COST_PER_SQUARE_FOOT, o.getLabourCostPerSquareFoot());
+		chunk.setDecimal(slot, MATERIAL_COST, o.getMaterialCost());
+		chunk.setDecimal(slot, LABOUR_COST, o.getLabourCost());
+		chunk.setDecimal(slot, TAX, o.getTax());
+		chunk.setDecimal(slot, TOTAL, o.getTotal());
+	}
+
+	private static short toShort(int id) {
+		if (id > Short.MAX_VALUE) {
+			throw new IllegalStateException("Too many distinct states or product types");
+		}
+		return (short) id;
+	}
+
+	private void checkRow(int row) {
+		if (row < 0 || row >= rows || chunks[row >>> CHUNK_BITS].removed[row & CHUNK_MASK]) {
+			throw new IndexOutOfBoundsException("No order at row " + row);
+		}
+	}
+
+	// up to CHUNK_SIZE rows of the table, column by column
+	private static final class Chunk {
+
+		private final int[] orderNumbers;
+		private final boolean[] removed;
+		private final String[] customerNames;
+		private final short[] stateIds;
+		private final short[] productTypeIds;
+		private final long[][] unscaled = new long[DECIMAL_COLUMNS][];
+		private final byte[][] scales = new byte[DECIMAL_COLUMNS][];
+		// only allocated once a row has a value that needs it
+		private BigDecimal[][] oversized;
+
+		private Chunk(int capacity) {
+			orderNumbers = new int[capacity];
+			removed = new boolean[capacity];
+			customerNames = new String[capacity];
+			stateIds = new short[capacity];
+			productTypeIds = new short[capacity];
+			for (int c = 0; c < DECIMAL_COLUMNS; c++) {
+				unscaled[c] = new long[capacity];
+				scales[c] = new byte[capacity];
+			}
+		}
+
+		// a row's oversized slots are never written in place, write gives
+		// the row new ones, so they are shared with the copy
+		private Chunk(Chunk from, int capacity) {
+			orderNumbers = Arrays.copyOf(from.orderNumbers, capacity);
+			removed = Arrays.copyOf(from.removed, capacity);
+			customerNames = Arrays.copyOf(from.customerNames, capacity);
+			stateIds = Arrays.copyOf(from.stateIds, capacity);
+			productTypeIds = Arrays.copyOf(from.productTypeIds, capacity);
+			for (int c = 0; c < DECIMAL_COLUMNS; c++) {
+				unscaled[c] = Arrays.copyOf(from.unscaled[c], capacity);
+				scales[c] = Arrays.copyOf(from.scales[c], capacity);
+			}
+			if (from.oversized != null) {
+				oversized = Arrays.copyOf(from.oversized, capacity);
+			}
+		}
+
+		private int capacity() {
+			return orderNumbers.length;
+		}
+
+		private Chunk copy(int capacity) {
+			return new Chunk(this, capacity);
+		}
+
+		private void copyRow(int from, Chunk to, int slot) {
+			to.orderNumbers[slot] = orderNumbers[from];
+			to.removed[slot] = false;
+			to.customerNames[slot] = customerNames[from];
+			to.stateIds[slot] = stateIds[from];
+			to.productTypeIds[slot] = productTypeIds[from];
+			for (int c = 0; c < DECIMAL_COLUMNS; c++) {
+				to.unscaled[c][slot] = unscaled[c][from];
+				to.scales[c][slot] = scales[c][from];
+			}
+			if (oversized != null && oversized[from] != null) {
+				if (to.oversized == null) {
+					to.oversized = new BigDecimal[to.capacity()][];
+				}
+				to.oversized[slot] = oversized[from];
+			}
+		}
+
+		private void setDecimal(int slot, int column, BigDecimal value) {
+			if (value != null && value.scale() > OVERSIZED && value.scale() <= Byte.MAX_VALUE
+					&& value.unscaledValue().bitLength() < 64) {
+				unscaled[column][slot] = value.unscaledValue().longValue();
+				scales[column][slot] = (byte) value.scale();
+				return;
+			}
+
+			if (oversized == null) {
+				oversized = new BigDecimal[capacity()][];
+			}
+			if (oversized[slot] == null) {
+				oversized[slot] = new BigDecimal[DECIMAL_COLUMNS];
+			}
+			oversized[slot][column] = value;
+			scales[column][slot] = OVERSIZED;
+		}
+
+		private BigDecimal decimal(int slot, int column) {
+			byte scale = scales[column][slot];
+			if (scale == OVERSIZED) {
+				return oversized[slot][column];
+			}
+			return BigDecimal.valueOf(unscaled[column][slot], scale);
+		}
+
+		// numeric comparison so 4.45 and 4.450 count as the same rate
+		private boolean differs(int slot, int column, BigDecimal value) {
+			BigDecimal current = decimal(slot, column);
+			return current == null || current.compareTo(value) != 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.wileyedge.flooring.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/// Gives each distinct string a small int id so repeated values such as
+/// state abbreviations and product types can be stored as ids
+/// ids are never reused or removed, lookups by id need no lock
+public class StringDictionary {
+
+	public static final int MISSING = -2;
+
+	private final Map<String, Integer> ids = new HashMap<>();
+	private volatile String[] values = new String[16];
+	private int size = 0;
+
+	// the id of a value, adding it if it is new
+	// null is given id -1
+	public synchronized int idOf(String value) {
+		if (value == null) {
+			return -1;
+		}
+		Integer id = ids.get(value);
+		if (id == null) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			id = size;
+			String[] current = values;
+			current[id] = value;
+			size++;
+			ids.put(value, id);
+			// publish the new entry to readers
+			values = current;
+		}
+		return id;
+	}
+
+	// the id of a value without adding it, MISSING if it was never added
+	public synchronized int find(String value) {
+		if (value == null) {
+			return -1;
+		}
+		Integer id = ids.get(value);
+		return id == null ? MISSING : id;
+	}
+
+	public String valueOf(int id) {
+		return id < 0 ? null : values[id];
+	}
+
+	// the shared instance equal to value, adding it if it is new
+	public String intern(String value) {
+		return valueOf(idOf(value));
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+}
@@ -0,0 +1,46 @@
+package com.wileyedge.flooring.service;
+
+import java.time.LocalDate;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/// Read write locks for the order dates, striped so a fixed number of locks
+/// covers every date. Neighbouring dates fall in different stripes so
+/// writers working on different days rarely wait for each other
+public class DateLocks {
+
+	private final ReentrantReadWriteLock[] stripes;
+
+	public DateLocks(int stripeCount) {
+		if (stripeCount < 1) {
+			throw new IllegalArgumentException("Stripe count must be at least 1");
+		}
+		stripes = new ReentrantReadWriteLock[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			stripes[i] = new ReentrantReadWriteLock();
+		}
+	}
+
+	public ReadWriteLock forDate(LocalDate date) {
+		return stripes[(int) Math.floorMod(date.toEpochDay(), (long) stripes.length)];
+	}
+
+	// takes every write lock, always in stripe order so two callers cant
+	// deadlock each other
+	public void lockAll() {
+		for (ReentrantReadWriteLock stripe : stripes) {
+			stripe.writeLock().lock();
+		}
+	}
+
+	public void unlockAll() {
+		for (int i = stripes.length - 1; i >= 0; i--) {
+			stripes[i].writeLock().unlock();
+		}
+	}
+
+	public int getStripeCount() {
+		return stripes.length;
+	}
+
+}
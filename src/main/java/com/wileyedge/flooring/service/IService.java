@@ -1,8 +1,13 @@
 package com.wileyedge.flooring.service;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import com.wileyedge.flooring.exceptions.InvalidAreaException;
 import com.wileyedge.flooring.exceptions.InvalidDateException;
@@ -18,16 +23,40 @@ public interface IService {
 
 	boolean initialise();
 
+	boolean reloadReferenceData();
+
+	RepriceReport repriceFutureOrders();
+
 	List<Order> getOrdersByDate(LocalDate date);
 
+	Stream<Order> streamOrders(OrderQuery query);
+
+	OrderPage getOrderPage(OrderQuery query, String cursor, int pageSize);
+
+	Rollup getRollup(LocalDate date, String state, String productType);
+
+	Rollup getRollup(YearMonth month, String state, String productType);
+
+	Map<String, Rollup> getRollupsByState(YearMonth month);
+
+	Map<String, Rollup> getRollupsByProductType(YearMonth month);
+
 	int addOrder(Order order);
 
-	boolean editOrder(Order order);
+	ImportResult importOrders(Reader in) throws IOException;
 
-	boolean removeOrder(Order order);
+	ImportResult importOrders(List<Order> orders);
+
+	boolean editOrder(Order order) throws OrderNotFoundException;
+
+	boolean removeOrder(Order order) throws OrderNotFoundException;
 
 	boolean exportData();
 
+	boolean flush();
+
+	boolean shutdown();
+
 	List<Product> getProducts();
 	List<TaxInfo> getTaxes();
 
@@ -41,8 +70,16 @@ public interface IService {
 
 	boolean validateArea(BigDecimal area) throws InvalidAreaException;
 
+	ValidationReport validateOrders(List<Order> orders);
+
+	List<String> checkOrder(Order order);
+
+	List<String> reviseOrder(Order order, String customerName, String state, String productType, BigDecimal area);
+
 	Order getOrder(LocalDate date, int orderNumber) throws OrderNotFoundException;
 
+	Order getOrder(int orderNumber) throws OrderNotFoundException;
+
 	
 
 	Order configureOrder(Order order, String customerName, String state, Product product, BigDecimal Area);
@@ -0,0 +1,42 @@
+package com.wileyedge.flooring.service;
+
+import java.util.Collections;
+import java.util.List;
+
+/// Outcome of an order import, how many orders were added and why any
+/// lines were turned away
+public class ImportResult {
+
+	private final int imported;
+	private final int rejected;
+	private final int firstOrderNumber;
+	private final List<String> errors;
+
+	ImportResult(int imported, int rejected, int firstOrderNumber, List<String> errors) {
+		this.imported = imported;
+		this.rejected = rejected;
+		this.firstOrderNumber = firstOrderNumber;
+		this.errors = Collections.unmodifiableList(errors);
+	}
+
+	public int getImported() {
+		return imported;
+	}
+
+	// rejected lines, a line can have more than one error
+	public int getRejected() {
+		return rejected;
+	}
+
+	/// Imported orders were numbered from here up in input order, 0 if
+	/// nothing was imported
+	public int getFirstOrderNumber() {
+		return firstOrderNumber;
+	}
+
+	/// One message per problem found, prefixed with its line number
+	public List<String> getErrors() {
+		return errors;
+	}
+
+}
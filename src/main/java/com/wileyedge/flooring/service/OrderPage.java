@@ -0,0 +1,36 @@
+package com.wileyedge.flooring.service;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.wileyedge.flooring.model.Order;
+
+/// One page of a range query and where the next page starts
+///
+/// the cursor is the date and number of the last order on the page, the
+/// next page carries on after it so orders added or removed in between
+/// dont shift the pages
+public class OrderPage {
+
+	private final List<Order> orders;
+	private final String nextCursor;
+
+	OrderPage(List<Order> orders, String nextCursor) {
+		this.orders = Collections.unmodifiableList(orders);
+		this.nextCursor = nextCursor;
+	}
+
+	public List<Order> getOrders() {
+		return orders;
+	}
+
+	public boolean hasMore() {
+		return nextCursor != null;
+	}
+
+	/// Pass to getOrderPage for the next page, null on the last page
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+}
@@ -0,0 +1,91 @@
+package com.wileyedge.flooring.service;
+
+import java.time.LocalDate;
+import java.util.function.Predicate;
+
+import com.wileyedge.flooring.model.Order;
+
+/// Which orders a range query wants, such as every WA Wood order between
+/// two dates. Each method returns a new query so a query can be kept and
+/// narrowed further
+///
+/// the state and product type are matched on the stored columns before
+/// any order is built, the where filter runs on the built orders
+public class OrderQuery {
+
+	private final LocalDate from;
+	private final LocalDate to;
+	private final String state;
+	private final String productType;
+	private final Predicate<Order> filter;
+	private final boolean parallel;
+
+	private OrderQuery(LocalDate from, LocalDate to, String state, String productType, Predicate<Order> filter,
+			boolean parallel) {
+		if (from != null && to != null && from.isAfter(to)) {
+			throw new IllegalArgumentException("The start date must not be after the end date");
+		}
+		this.from = from;
+		this.to = to;
+		this.state = state;
+		this.productType = productType;
+		this.filter = filter;
+		this.parallel = parallel;
+	}
+
+	/// Orders dated from to to inclusive, null leaves that end open
+	public static OrderQuery between(LocalDate from, LocalDate to) {
+		return new OrderQuery(from, to, null, null, null, false);
+	}
+
+	public static OrderQuery all() {
+		return between(null, null);
+	}
+
+	// the state as an abbreviation or name, matched as the tax file spells it
+	public OrderQuery state(String state) {
+		return new OrderQuery(from, to, state, productType, filter, parallel);
+	}
+
+	public OrderQuery productType(String productType) {
+		return new OrderQuery(from, to, state, productType, filter, parallel);
+	}
+
+	/// Only orders matching filter as well, added to any filter already set
+	public OrderQuery where(Predicate<Order> filter) {
+		return new OrderQuery(from, to, state, productType, this.filter == null ? filter : this.filter.and(filter),
+				parallel);
+	}
+
+	/// Streams read the partitions on many threads, the stream still
+	/// keeps date order for ordered operations such as forEachOrdered
+	public OrderQuery parallel() {
+		return new OrderQuery(from, to, state, productType, filter, true);
+	}
+
+	public LocalDate getFrom() {
+		return from;
+	}
+
+	public LocalDate getTo() {
+		return to;
+	}
+
+	public String getState() {
+		return state;
+	}
+
+	public String getProductType() {
+		return productType;
+	}
+
+	// null when there is no filter
+	public Predicate<Order> getFilter() {
+		return filter;
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+}
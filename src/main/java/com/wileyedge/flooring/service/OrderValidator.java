@@ -0,0 +1,120 @@
+package com.wileyedge.flooring.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import com.wileyedge.flooring.model.Order;
+
+/// Checks new orders against the input rules, many at a time
+/// rules are built once and a failed check is recorded in the report
+/// rather than thrown, the IService validators throw from the same checks
+public class OrderValidator {
+
+	/// The fields that are checked and the message for each
+	public enum Field {
+		ORDER_DATE("Order date must be in the future"),
+		CUSTOMER_NAME("Name does not meet format specifications"),
+		STATE("Invalid input or state is unsupported"),
+		PRODUCT_TYPE("Product type is unsupported"),
+		AREA("Area must be at least 100.00");
+
+		private final String message;
+
+		Field(String message) {
+			this.message = message;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		int bit() {
+			return 1 << ordinal();
+		}
+	}
+
+	private static final BigDecimal MIN_AREA = new BigDecimal("100.00");
+	// batches at least this big are checked in parallel
+	private static final int PARALLEL_THRESHOLD = 10_000;
+
+	// characters allowed in a name, the same set as [a-zA-Z0-9., ]+
+	private static final boolean[] NAME_CHARS = new boolean[128];
+
+	static {
+		for (char c = 'a'; c <= 'z'; c++) {
+			NAME_CHARS[c] = true;
+			NAME_CHARS[Character.toUpperCase(c)] = true;
+		}
+		for (char c = '0'; c <= '9'; c++) {
+			NAME_CHARS[c] = true;
+		}
+		NAME_CHARS['.'] = true;
+		NAME_CHARS[','] = true;
+		NAME_CHARS[' '] = true;
+	}
+
+	private final ReferenceTables tables;
+	private final LocalDate today;
+
+	public OrderValidator(ReferenceTables tables, LocalDate today) {
+		this.tables = tables;
+		this.today = today;
+	}
+
+	/// Checks every order, the report has the failed fields of each one by
+	/// its position in the list
+	public ValidationReport validate(List<Order> orders) {
+		int[] failures = new int[orders.size()];
+		IntStream indexes = IntStream.range(0, failures.length);
+		if (failures.length >= PARALLEL_THRESHOLD) {
+			indexes = indexes.parallel();
+		}
+		indexes.forEach(i -> failures[i] = check(orders.get(i)));
+		return new ValidationReport(failures);
+	}
+
+	// the bits of the fields that failed, 0 if the order is valid
+	public int check(Order o) {
+		int failed = 0;
+		if (!isValidOrderDate(o.getOrderDate(), today)) {
+			failed |= Field.ORDER_DATE.bit();
+		}
+		if (!isValidName(o.getCustomerName())) {
+			failed |= Field.CUSTOMER_NAME.bit();
+		}
+		if (tables.findTaxInfo(o.getState()) == null) {
+			failed |= Field.STATE.bit();
+		}
+		if (tables.findProduct(o.getProductType()) == null) {
+			failed |= Field.PRODUCT_TYPE.bit();
+		}
+		if (!isValidArea(o.getArea())) {
+			failed |= Field.AREA.bit();
+		}
+		return failed;
+	}
+
+	public static boolean isValidOrderDate(LocalDate date, LocalDate today) {
+		return date != null && today.isBefore(date);
+	}
+
+	public static boolean isValidName(String name) {
+		if (name == null || name.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c >= NAME_CHARS.length || !NAME_CHARS[c]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static boolean isValidArea(BigDecimal area) {
+		return area != null && area.compareTo(MIN_AREA) >= 0;
+	}
+
+}
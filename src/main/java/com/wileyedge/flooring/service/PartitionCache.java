@@ -0,0 +1,140 @@
+package com.wileyedge.flooring.service;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import com.wileyedge.flooring.model.OrderTable;
+
+/// Holds the order partitions that are currently in memory, keyed by date
+/// once the cache is over capacity the least recently used clean partitions
+/// are evicted, dirty partitions stay until they have been saved
+///
+/// Safe to use from many threads. The partitions are published as one
+/// immutable snapshot, every put or eviction swaps in a new version so
+/// readers take no lock and a snapshot never changes under them. A table
+/// must not be changed once it has been put, change a copy and put that
+public class PartitionCache {
+
+	private final int capacity;
+	private final AtomicReference<PartitionSnapshot> current = new AtomicReference<>(PartitionSnapshot.EMPTY);
+	private final Set<LocalDate> dirty = ConcurrentHashMap.newKeySet();
+	// when each partition was last used, only tracked when the cache can fill
+	private final boolean bounded;
+	private final Map<LocalDate, Long> lastUsed = new ConcurrentHashMap<>();
+	private final AtomicLong clock = new AtomicLong();
+
+	public PartitionCache(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		}
+		this.capacity = capacity;
+		this.bounded = capacity < Integer.MAX_VALUE;
+	}
+
+	public OrderTable get(LocalDate date) {
+		OrderTable orders = current.get().get(date);
+		if (orders != null) {
+			touch(date);
+		}
+		return orders;
+	}
+
+	// gets the partition, loading it on a miss
+	// a partition the loader cant find (null) is not cached, if two threads
+	// load the same date at once the first one cached wins
+	public OrderTable get(LocalDate date, Function<LocalDate, OrderTable> loader) {
+		OrderTable orders = get(date);
+		if (orders == null) {
+			orders = loader.apply(date);
+			if (orders != null) {
+				OrderTable loaded = orders;
+				PartitionSnapshot published = current
+						.updateAndGet(s -> s.contains(date) ? s : s.with(date, loaded));
+				orders = published.get(date);
+				touch(date);
+				evict();
+			}
+		}
+		return orders;
+	}
+
+	/// Publishes orders as the date's partition in a new version
+	public void put(LocalDate date, OrderTable orders) {
+		current.updateAndGet(s -> s.with(date, orders));
+		touch(date);
+		evict();
+	}
+
+	public boolean contains(LocalDate date) {
+		return current.get().contains(date);
+	}
+
+	public void markDirty(LocalDate date) {
+		dirty.add(date);
+	}
+
+	public void markClean(LocalDate date) {
+		dirty.remove(date);
+		evict();
+	}
+
+	public boolean isDirty(LocalDate date) {
+		return dirty.contains(date);
+	}
+
+	public int size() {
+		return current.get().size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/// The partitions as they are now, later puts make new versions and do
+	/// not change it. Reading it does not change the recency order
+	public PartitionSnapshot snapshot() {
+		return current.get();
+	}
+
+	private void touch(LocalDate date) {
+		if (bounded) {
+			lastUsed.put(date, clock.incrementAndGet());
+		}
+	}
+
+	// drops least recently used clean partitions until back under capacity
+	// one thread evicts at a time, a partition dropped just as it is used
+	// again is only read back from its file
+	private synchronized void evict() {
+		while (current.get().size() > capacity) {
+			PartitionSnapshot snapshot = current.get();
+			LocalDate oldest = null;
+			long oldestUse = Long.MAX_VALUE;
+			for (LocalDate date : snapshot.getDates()) {
+				long used = lastUsed.getOrDefault(date, 0L);
+				if (used < oldestUse && !dirty.contains(date)) {
+					oldest = date;
+					oldestUse = used;
+				}
+			}
+			if (oldest == null) {
+				return;
+			}
+			// only the version looked at is dropped, a newer one put since
+			// may not be saved yet
+			LocalDate date = oldest;
+			OrderTable seen = snapshot.get(date);
+			if (current.updateAndGet(s -> s.get(date) == seen ? s.without(date) : s).contains(date)) {
+				touch(date);
+			} else {
+				lastUsed.remove(date);
+			}
+		}
+	}
+
+}
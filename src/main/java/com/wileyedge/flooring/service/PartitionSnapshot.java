@@ -0,0 +1,205 @@
+package com.wileyedge.flooring.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import com.wileyedge.flooring.model.OrderTable;
+
+/// One immutable version of the order partitions held in memory. Changing a
+/// date makes a new version that shares everything else with this one, the
+/// dates are grouped by month so a change copies that month's entries and
+/// the list of months rather than every date
+///
+/// the tables in a snapshot are never changed once published, so anything
+/// read through one version is a consistent point in time without locks
+public final class PartitionSnapshot {
+
+	public static final PartitionSnapshot EMPTY = new PartitionSnapshot(0, new int[0], new Month[0], 0);
+
+	// the dates of one month, by day in order
+	private static final class Month {
+		private final byte[] days;
+		private final OrderTable[] tables;
+
+		private Month(byte[] days, OrderTable[] tables) {
+			this.days = days;
+			this.tables = tables;
+		}
+	}
+
+	private final long version;
+	// months in order as year * 12 + month - 1
+	private final int[] monthKeys;
+	private final Month[] months;
+	private final int size;
+
+	private PartitionSnapshot(long version, int[] monthKeys, Month[] months, int size) {
+		this.version = version;
+		this.monthKeys = monthKeys;
+		this.months = months;
+		this.size = size;
+	}
+
+	// goes up by one for every change
+	public long getVersion() {
+		return version;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public OrderTable get(LocalDate date) {
+		int m = Arrays.binarySearch(monthKeys, monthKey(date));
+		if (m < 0) {
+			return null;
+		}
+		Month month = months[m];
+		int d = Arrays.binarySearch(month.days, (byte) date.getDayOfMonth());
+		return d < 0 ? null : month.tables[d];
+	}
+
+	public boolean contains(LocalDate date) {
+		return get(date) != null;
+	}
+
+	/// A new version with the date's table set to table
+	public PartitionSnapshot with(LocalDate date, OrderTable table) {
+		if (table == null) {
+			throw new IllegalArgumentException("A partition cant be null");
+		}
+		int key = monthKey(date);
+		byte day = (byte) date.getDayOfMonth();
+		int m = Arrays.binarySearch(monthKeys, key);
+
+		if (m < 0) {
+			// a month of its own
+			int at = -m - 1;
+			Month month = new Month(new byte[] { day }, new OrderTable[] { table });
+			return new PartitionSnapshot(version + 1, insert(monthKeys, at, key), insert(months, at, month),
+					size + 1);
+		}
+
+		Month month = months[m];
+		int d = Arrays.binarySearch(month.days, day);
+		Month changed;
+		int added = 0;
+		if (d >= 0) {
+			OrderTable[] tables = month.tables.clone();
+			tables[d] = table;
+			changed = new Month(month.days, tables);
+		} else {
+			int at = -d - 1;
+			byte[] days = new byte[month.days.length + 1];
+			System.arraycopy(month.days, 0, days, 0, at);
+			days[at] = day;
+			System.arraycopy(month.days, at, days, at + 1, month.days.length - at);
+			changed = new Month(days, insert(month.tables, at, table));
+			added = 1;
+		}
+		Month[] newMonths = months.clone();
+		newMonths[m] = changed;
+		return new PartitionSnapshot(version + 1, monthKeys, newMonths, size + added);
+	}
+
+	/// A new version without the date, this one if it is not there
+	public PartitionSnapshot without(LocalDate date) {
+		int m = Arrays.binarySearch(monthKeys, monthKey(date));
+		if (m < 0) {
+			return this;
+		}
+		Month month = months[m];
+		int d = Arrays.binarySearch(month.days, (byte) date.getDayOfMonth());
+		if (d < 0) {
+			return this;
+		}
+
+		if (month.days.length == 1) {
+			return new PartitionSnapshot(version + 1, remove(monthKeys, m), remove(months, m), size - 1);
+		}
+		byte[] days = new byte[month.days.length - 1];
+		System.arraycopy(month.days, 0, days, 0, d);
+		System.arraycopy(month.days, d + 1, days, d, days.length - d);
+		Month[] newMonths = months.clone();
+		newMonths[m] = new Month(days, remove(month.tables, d));
+		return new PartitionSnapshot(version + 1, monthKeys, newMonths, size - 1);
+	}
+
+	/// Runs action on every date in order
+	public void forEach(BiConsumer<LocalDate, OrderTable> action) {
+		for (int m = 0; m < months.length; m++) {
+			Month month = months[m];
+			for (int d = 0; d < month.days.length; d++) {
+				action.accept(date(monthKeys[m], month.days[d]), month.tables[d]);
+			}
+		}
+	}
+
+	public List<LocalDate> getDates() {
+		List<LocalDate> dates = new ArrayList<>(size);
+		forEach((date, table) -> dates.add(date));
+		return dates;
+	}
+
+	/// The dates from from to to inclusive in order, null leaves that end open
+	public List<LocalDate> getDates(LocalDate from, LocalDate to) {
+		List<LocalDate> dates = new ArrayList<>();
+		int m = from == null ? 0 : Arrays.binarySearch(monthKeys, monthKey(from));
+		if (m < 0) {
+			m = -m - 1;
+		}
+		for (; m < months.length; m++) {
+			if (to != null && monthKeys[m] > monthKey(to)) {
+				break;
+			}
+			Month month = months[m];
+			for (byte day : month.days) {
+				LocalDate date = date(monthKeys[m], day);
+				if ((from == null || !date.isBefore(from)) && (to == null || !date.isAfter(to))) {
+					dates.add(date);
+				}
+			}
+		}
+		return dates;
+	}
+
+	private static int monthKey(LocalDate date) {
+		return date.getYear() * 12 + date.getMonthValue() - 1;
+	}
+
+	private static LocalDate date(int monthKey, byte day) {
+		return LocalDate.of(Math.floorDiv(monthKey, 12), Math.floorMod(monthKey, 12) + 1, day);
+	}
+
+	private static int[] insert(int[] values, int at, int value) {
+		int[] copy = new int[values.length + 1];
+		System.arraycopy(values, 0, copy, 0, at);
+		copy[at] = value;
+		System.arraycopy(values, at, copy, at + 1, values.length - at);
+		return copy;
+	}
+
+	private static <T> T[] insert(T[] values, int at, T value) {
+		T[] copy = Arrays.copyOf(values, values.length + 1);
+		System.arraycopy(values, at, copy, at + 1, values.length - at);
+		copy[at] = value;
+		return copy;
+	}
+
+	private static int[] remove(int[] values, int at) {
+		int[] copy = new int[values.length - 1];
+		System.arraycopy(values, 0, copy, 0, at);
+		System.arraycopy(values, at + 1, copy, at, copy.length - at);
+		return copy;
+	}
+
+	private static <T> T[] remove(T[] values, int at) {
+		T[] copy = Arrays.copyOf(values, values.length - 1);
+		System.arraycopy(values, at + 1, copy, at, copy.length - at);
+		return copy;
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.wileyedge.flooring.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.wileyedge.flooring.model.Product;
+import com.wileyedge.flooring.model.TaxInfo;
+
+/// The tax and product reference data, indexed by state abbreviation and
+/// product type ignoring case
+/// never changed once built, a reload builds a new one and swaps it in so
+/// readers need no lock
+public final class ReferenceTables {
+
+	private final List<TaxInfo> taxes;
+	private final List<Product> products;
+	private final Map<String, TaxInfo> taxesByState;
+	private final Map<String, Product> productsByType;
+
+	public ReferenceTables(List<TaxInfo> taxes, List<Product> products) {
+		this.taxes = Collections.unmodifiableList(new ArrayList<>(taxes));
+		this.products = Collections.unmodifiableList(new ArrayList<>(products));
+
+		// the first entry wins if a file repeats a key, as the old scans did
+		Map<String, TaxInfo> byState = new HashMap<>();
+		for (TaxInfo ti : taxes) {
+			byState.putIfAbsent(key(ti.getStateAbbreviation()), ti);
+		}
+		Map<String, Product> byType = new HashMap<>();
+		for (Product p : products) {
+			byType.putIfAbsent(key(p.getProductType()), p);
+		}
+		this.taxesByState = Collections.unmodifiableMap(byState);
+		this.productsByType = Collections.unmodifiableMap(byType);
+	}
+
+	// null if the state is not in the table
+	public TaxInfo findTaxInfo(String stateAbbreviation) {
+		return stateAbbreviation == null ? null : taxesByState.get(key(stateAbbreviation));
+	}
+
+	// null if the product is not in the table
+	public Product findProduct(String productType) {
+		return productType == null ? null : productsByType.get(key(productType));
+	}
+
+	public List<TaxInfo> getTaxes() {
+		return taxes;
+	}
+
+	public List<Product> getProducts() {
+		return products;
+	}
+
+	private static String key(String value) {
+		return value.toUpperCase(Locale.ROOT);
+	}
+
+}
@@ -0,0 +1,85 @@
+package com.wileyedge.flooring.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import com.wileyedge.flooring.model.Order;
+
+/// What a repricing run changed, each repriced order before and after
+public class RepriceReport {
+
+	/// One repriced order
+	public static class Change {
+		private final Order before;
+		private final Order after;
+
+		Change(Order before, Order after) {
+			this.before = before;
+			this.after = after;
+		}
+
+		public Order getBefore() {
+			return before;
+		}
+
+		public Order getAfter() {
+			return after;
+		}
+
+		// the changed fields as name: old -> new
+		public List<String> getDifferences() {
+			List<String> differences = new ArrayList<>();
+			compare(differences, "Tax Rate", before.getTaxRate(), after.getTaxRate());
+			compare(differences, "Cost Per Square Foot", before.getCostPerSquareFoot(), after.getCostPerSquareFoot());
+			compare(differences, "Labour Cost Per Square Foot", before.getLabourCostPerSquareFoot(),
+					after.getLabourCostPerSquareFoot());
+			compare(differences, "Material Cost", before.getMaterialCost(), after.getMaterialCost());
+			compare(differences, "Labour Cost", before.getLabourCost(), after.getLabourCost());
+			compare(differences, "Tax", before.getTax(), after.getTax());
+			compare(differences, "Total", before.getTotal(), after.getTotal());
+			return differences;
+		}
+
+		@Override
+		public String toString() {
+			return "  * " + after.getOrderDate() + " | Order Number: " + after.getOrderNumber() + " | "
+					+ String.join(" | ", getDifferences());
+		}
+
+		private static void compare(List<String> differences, String name, BigDecimal old, BigDecimal now) {
+			if (!Objects.equals(old, now)) {
+				differences.add(name + ": " + old + " -> " + now);
+			}
+		}
+	}
+
+	private final List<Change> changes;
+	private final List<LocalDate> datesWritten;
+
+	RepriceReport(List<Change> changes, List<LocalDate> datesWritten) {
+		this.changes = Collections.unmodifiableList(changes);
+		this.datesWritten = Collections.unmodifiableList(datesWritten);
+	}
+
+	public List<Change> getChanges() {
+		return changes;
+	}
+
+	public List<LocalDate> getDatesWritten() {
+		return datesWritten;
+	}
+
+	// one line per repriced order
+	public List<String> getDiff() {
+		List<String> lines = new ArrayList<>(changes.size());
+		for (Change c : changes) {
+			lines.add(c.toString());
+		}
+		return lines;
+	}
+
+}
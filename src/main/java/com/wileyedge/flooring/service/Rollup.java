@@ -0,0 +1,84 @@
+package com.wileyedge.flooring.service;
+
+import java.math.BigDecimal;
+
+import com.wileyedge.flooring.model.Order;
+
+/// Totals over a set of orders, the number of orders and the sums of their
+/// total, tax, material cost, labour cost and area. Sums are exact, a
+/// value an order does not have yet counts as zero
+public final class Rollup {
+
+	public static final Rollup EMPTY = new Rollup(0, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO,
+			BigDecimal.ZERO, BigDecimal.ZERO);
+
+	private final long orderCount;
+	private final BigDecimal total;
+	private final BigDecimal tax;
+	private final BigDecimal materialCost;
+	private final BigDecimal labourCost;
+	private final BigDecimal area;
+
+	private Rollup(long orderCount, BigDecimal total, BigDecimal tax, BigDecimal materialCost, BigDecimal labourCost,
+			BigDecimal area) {
+		this.orderCount = orderCount;
+		this.total = total;
+		this.tax = tax;
+		this.materialCost = materialCost;
+		this.labourCost = labourCost;
+		this.area = area;
+	}
+
+	// the totals of one order
+	static Rollup of(Order o) {
+		return new Rollup(1, orZero(o.getTotal()), orZero(o.getTax()), orZero(o.getMaterialCost()),
+				orZero(o.getLabourCost()), orZero(o.getArea()));
+	}
+
+	public Rollup plus(Rollup other) {
+		return new Rollup(orderCount + other.orderCount, total.add(other.total), tax.add(other.tax),
+				materialCost.add(other.materialCost), labourCost.add(other.labourCost), area.add(other.area));
+	}
+
+	// takes other's orders back out
+	Rollup minus(Rollup other) {
+		return new Rollup(orderCount - other.orderCount, total.subtract(other.total), tax.subtract(other.tax),
+				materialCost.subtract(other.materialCost), labourCost.subtract(other.labourCost),
+				area.subtract(other.area));
+	}
+
+	public long getOrderCount() {
+		return orderCount;
+	}
+
+	public BigDecimal getTotal() {
+		return total;
+	}
+
+	public BigDecimal getTax() {
+		return tax;
+	}
+
+	public BigDecimal getMaterialCost() {
+		return materialCost;
+	}
+
+	public BigDecimal getLabourCost() {
+		return labourCost;
+	}
+
+	public BigDecimal getArea() {
+		return area;
+	}
+
+	@Override
+	public String toString() {
+		return "Orders: " + orderCount + ", Total: " + total + ", Tax: " + tax + ", Material Cost: " + materialCost
+				+ ", Labour Cost: " + labourCost + ", Area: " + area;
+	}
+
+	private static BigDecimal orZero(BigDecimal value) {
+		return value == null ? BigDecimal.ZERO : value;
+	}
+
+}
@@ -0,0 +1,174 @@
+package com.wileyedge.flooring.service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import com.wileyedge.flooring.model.Order;
+import com.wileyedge.flooring.model.OrderTable;
+import com.wileyedge.flooring.model.StringDictionary;
+
+/// Totals of the orders kept by day, by month and for all time, each split
+/// by state and product type. Every change to an order adjusts the totals
+/// it falls in so a question such as the revenue for June only adds up the
+/// month's few state and product groups instead of reading every order
+///
+/// Safe to use from many threads. Each adjustment to a group is atomic, a
+/// query running alongside a change may see it in some totals and not yet
+/// in others
+public class Rollups {
+
+	// matches every state or product type
+	public static final int ANY = OrderTable.ANY;
+
+	private final StringDictionary states;
+	private final StringDictionary productTypes;
+
+	// period to group to totals, a group is a state and product type pair
+	private final Map<Integer, Map<Integer, Rollup>> byDay = new ConcurrentHashMap<>();
+	private final Map<Integer, Map<Integer, Rollup>> byMonth = new ConcurrentHashMap<>();
+	private final Map<Integer, Rollup> allTime = new ConcurrentHashMap<>();
+
+	public Rollups(StringDictionary states, StringDictionary productTypes) {
+		this.states = states;
+		this.productTypes = productTypes;
+	}
+
+	/// Starts again from the orders on each date, the dates are read and
+	/// totalled in parallel. orders gives null for a date with no file
+	public void rebuild(Collection<LocalDate> dates, Function<LocalDate, ? extends Collection<Order>> orders) {
+		byDay.clear();
+		byMonth.clear();
+		allTime.clear();
+		dates.parallelStream().forEach(date -> {
+			Collection<Order> day = orders.apply(date);
+			if (day != null) {
+				addDay(date, day);
+			}
+		});
+	}
+
+	/// Adds in a date whose orders are not in the totals yet, such as one
+	/// loaded for the first time
+	public void addDay(LocalDate date, Collection<Order> orders) {
+		// a day is totalled on its own then added in once per group
+		Map<Integer, Rollup> groups = new HashMap<>();
+		for (Order o : orders) {
+			groups.merge(group(o), Rollup.of(o), Rollup::plus);
+		}
+		Map<Integer, Rollup> day = byDay.computeIfAbsent((int) date.toEpochDay(), k -> new ConcurrentHashMap<>());
+		Map<Integer, Rollup> month = byMonth.computeIfAbsent(monthKey(YearMonth.from(date)),
+				k -> new ConcurrentHashMap<>());
+		groups.forEach((group, totals) -> {
+			day.merge(group, totals, Rollup::plus);
+			month.merge(group, totals, Rollup::plus);
+			allTime.merge(group, totals, Rollup::plus);
+		});
+	}
+
+	public void add(Order o) {
+		apply(o, Rollup.of(o), true);
+	}
+
+	public void remove(Order o) {
+		apply(o, Rollup.of(o), false);
+	}
+
+	// an order changed in place, before and after are on the same date
+	public void replace(Order before, Order after) {
+		remove(before);
+		add(after);
+	}
+
+	public Rollup getDay(LocalDate date, int stateId, int productTypeId) {
+		return sum(byDay.get((int) date.toEpochDay()), stateId, productTypeId);
+	}
+
+	public Rollup getMonth(YearMonth month, int stateId, int productTypeId) {
+		return sum(byMonth.get(monthKey(month)), stateId, productTypeId);
+	}
+
+	public Rollup getAllTime(int stateId, int productTypeId) {
+		return sum(allTime, stateId, productTypeId);
+	}
+
+	/// The month's totals for each state, or for all time when month is null
+	public Map<String, Rollup> getByState(YearMonth month) {
+		return split(month, true);
+	}
+
+	/// The month's totals for each product type, or for all time when month
+	/// is null
+	public Map<String, Rollup> getByProductType(YearMonth month) {
+		return split(month, false);
+	}
+
+	private void apply(Order o, Rollup change, boolean adding) {
+		int group = group(o);
+		LocalDate date = o.getOrderDate();
+		adjust(byDay.computeIfAbsent((int) date.toEpochDay(), k -> new ConcurrentHashMap<>()), group, change,
+				adding);
+		adjust(byMonth.computeIfAbsent(monthKey(YearMonth.from(date)), k -> new ConcurrentHashMap<>()), group,
+				change, adding);
+		adjust(allTime, group, change, adding);
+	}
+
+	// a group whose last order goes is dropped
+	private static void adjust(Map<Integer, Rollup> groups, int group, Rollup change, boolean adding) {
+		groups.compute(group, (g, totals) -> {
+			Rollup current = totals == null ? Rollup.EMPTY : totals;
+			Rollup next = adding ? current.plus(change) : current.minus(change);
+			return next.getOrderCount() == 0 ? null : next;
+		});
+	}
+
+	private static Rollup sum(Map<Integer, Rollup> groups, int stateId, int productTypeId) {
+		Rollup sum = Rollup.EMPTY;
+		if (groups == null) {
+			return sum;
+		}
+		for (Map.Entry<Integer, Rollup> e : groups.entrySet()) {
+			int group = e.getKey();
+			if ((stateId == ANY || stateOf(group) == stateId)
+					&& (productTypeId == ANY || productTypeOf(group) == productTypeId)) {
+				sum = sum.plus(e.getValue());
+			}
+		}
+		return sum;
+	}
+
+	private Map<String, Rollup> split(YearMonth month, boolean byStateName) {
+		Map<Integer, Rollup> groups = month == null ? allTime : byMonth.get(monthKey(month));
+		Map<String, Rollup> split = new HashMap<>();
+		if (groups != null) {
+			groups.forEach((group, totals) -> {
+				String name = byStateName ? states.valueOf(stateOf(group))
+						: productTypes.valueOf(productTypeOf(group));
+				split.merge(String.valueOf(name), totals, Rollup::plus);
+			});
+		}
+		return split;
+	}
+
+	// ids start at -1 for null so each is stored one up in 16 bits
+	private int group(Order o) {
+		return ((states.idOf(o.getState()) + 1) << 16) | (productTypes.idOf(o.getProductType()) + 1);
+	}
+
+	private static int stateOf(int group) {
+		return (group >>> 16) - 1;
+	}
+
+	private static int productTypeOf(int group) {
+		return (group & 0xFFFF) - 1;
+	}
+
+	private static int monthKey(YearMonth month) {
+		return month.getYear() * 12 + month.getMonthValue() - 1;
+	}
+
+}
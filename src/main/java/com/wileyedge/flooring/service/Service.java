@@ -1,12 +1,30 @@
 package com.wileyedge.flooring.service;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -19,8 +37,11 @@ import com.wileyedge.flooring.exceptions.InvalidNameException;
 import com.wileyedge.flooring.exceptions.InvalidStateException;
 import com.wileyedge.flooring.exceptions.NoOrdersForDateException;
 import com.wileyedge.flooring.exceptions.OrderNotFoundException;
+import com.wileyedge.flooring.model.IntIntMap;
 import com.wileyedge.flooring.model.Order;
+import com.wileyedge.flooring.model.OrderTable;
 import com.wileyedge.flooring.model.Product;
+import com.wileyedge.flooring.model.StringDictionary;
 import com.wileyedge.flooring.model.TaxInfo;
 
 @Component(value = "service")
@@ -28,10 +49,45 @@ public class Service implements IService {
 
 	@Autowired
 	private IDao dao;
-	private List<Product> products;
-	private List<TaxInfo> taxes;
-	private int nextOrderNum;
-	private Map<LocalDate, List<Order>> map;
+	// replaced whole on a reload, never changed in place
+	private volatile ReferenceTables reference = new ReferenceTables(Collections.emptyList(),
+			Collections.emptyList());
+
+	// orders held in memory by date, as columns rather than Order objects
+	// by default every partition is loaded at startup, in lazy mode only the
+	// dates are indexed and partitions are loaded the first time they are used
+	// published tables are never changed, a change copies the date's table
+	// under its write lock and publishes the copy so readers need no lock
+	private PartitionCache partitions;
+	private final DateLocks locks = new DateLocks(64);
+	private final StringDictionary states = new StringDictionary();
+	private final StringDictionary productTypes = new StringDictionary();
+	// totals by day, month, state and product, changed along with the orders
+	private final Rollups rollups = new Rollups(states, productTypes);
+
+	// order number to the epoch day of its date, covers every loaded date
+	// even once its partition is evicted
+	// numbers repeated across dates make a miss in the index unreliable so
+	// lookups then check the partition as well
+	private IntIntMap orderIndex;
+	// dates whose orders are in the index and the totals, in lazy mode a
+	// date is added the first time its partition loads so startup reads
+	// no order file
+	private final Map<LocalDate, Boolean> loadedDates = new ConcurrentHashMap<>();
+	private final ReadWriteLock indexLock = new ReentrantReadWriteLock();
+	private volatile boolean duplicateOrderNumbers = false;
+	private NavigableSet<LocalDate> orderDates;
+	private boolean lazyLoading = false;
+	private int partitionCacheSize = 256;
+
+	// when set changes are saved by a background writer rather than by the
+	// caller, null writes every change straight through
+	private volatile WriteBehind writeBehind;
+	private long writeBehindMillis = 0;
+	private int writeBehindQueue = 0;
+	private static final long FLUSH_TIMEOUT_MILLIS = 60_000;
+
+	private static final DateTimeFormatter IMPORT_DATE_FORMAT = DateTimeFormatter.ofPattern("MM-dd-yyyy");
 
 	// Only made for testing purposes
 	public Service(Dao dao) {
@@ -42,116 +98,785 @@ public class Service implements IService {
 	@Override
 	public boolean initialise() {
 
-		// Initialize list of tax info
-		taxes = dao.getTaxInfo();
+		// Initialize tax info and products
+		reloadReferenceData();
 
-		// Initialize list of products
-		products = dao.getProducts();
+		if (lazyLoading) {
+			// only index the order files, partitions load on demand
+			orderDates = new ConcurrentSkipListSet<>(dao.getOrderDates());
+			partitions = new PartitionCache(partitionCacheSize);
+			orderIndex = new IntIntMap();
+		} else {
+			// Initialize map of orders
+			Map<LocalDate, List<Order>> map = dao.getOrders();
+			orderDates = new ConcurrentSkipListSet<>(map.keySet());
+			partitions = new PartitionCache(Integer.MAX_VALUE);
+			// convert a date at a time so the loaded orders can be collected
+			orderIndex = new IntIntMap();
+			for (LocalDate date : orderDates) {
+				OrderTable orders = toTable(date, map.remove(date));
+				partitions.put(date, orders);
+				indexOrders(date, orders.getOrderNumbers());
+				loadedDates.put(date, Boolean.TRUE);
+			}
+
+			// the totals are worked out a date at a time in parallel
+			PartitionSnapshot snapshot = partitions.snapshot();
+			rollups.rebuild(orderDates, date -> {
+				OrderTable orders = snapshot.get(date);
+				return orders == null ? null : orders.asList();
+			});
+		}
 
-		// Initialize map of orders
-		map = dao.getOrders();
-		// Initialize next order num
-		nextOrderNum = dao.getMaxOrderNumber() + 1;
+		if (writeBehindMillis > 0) {
+			writeBehind = new WriteBehind(writeBehindMillis, writeBehindQueue, this::saveDate);
+		}
 
 		return false;
 	}
 
+	/// Reads the tax and product files again and publishes them as one new
+	/// table, readers see either the old table or the new one
+	/// returns false and keeps the old table if either file cant be read
+	@Override
+	public boolean reloadReferenceData() {
+		List<TaxInfo> taxes = dao.getTaxInfo();
+		List<Product> products = dao.getProducts();
+		if (taxes == null || products == null) {
+			return false;
+		}
+
+		// give the known states and products the first ids
+		for (TaxInfo ti : taxes) {
+			states.idOf(ti.getStateAbbreviation());
+		}
+		for (Product p : products) {
+			productTypes.idOf(p.getProductType());
+		}
+
+		reference = new ReferenceTables(taxes, products);
+		return true;
+	}
+
+	/// Reloads the tax and product files and reprices every future order
+	/// whose tax rate or costs no longer match them
+	/// the partitions are repriced in parallel, each under its date's lock,
+	/// and each changed date is written once, null if the reference data
+	/// could not be reloaded
+	@Override
+	public RepriceReport repriceFutureOrders() {
+		if (!reloadReferenceData()) {
+			return null;
+		}
+		ReferenceTables tables = reference;
+
+		// the current rates by state and product id, every spelling of a
+		// state or product seen in the orders maps to its entry in the files
+		BigDecimal[] taxRateByState = new BigDecimal[states.size()];
+		for (int id = 0; id < taxRateByState.length; id++) {
+			TaxInfo ti = tables.findTaxInfo(states.valueOf(id));
+			taxRateByState[id] = ti == null ? null : ti.getTaxRate();
+		}
+		BigDecimal[] costByProduct = new BigDecimal[productTypes.size()];
+		BigDecimal[] labourCostByProduct = new BigDecimal[costByProduct.length];
+		for (int id = 0; id < costByProduct.length; id++) {
+			Product p = tables.findProduct(productTypes.valueOf(id));
+			if (p != null) {
+				costByProduct[id] = p.getCostPerSquareFoot();
+				labourCostByProduct[id] = p.getLabourCostPerSquareFoot();
+			}
+		}
+
+		// each future partition is loaded, repriced and written by one thread
+		List<LocalDate> future = new ArrayList<>(orderDates.tailSet(LocalDate.now(), false));
+		List<List<RepriceReport.Change>> changed = future.parallelStream().map(date -> {
+			List<RepriceReport.Change> changes = new ArrayList<>();
+			Lock lock = lockForChange(date);
+			try {
+				OrderTable published = getPartition(date);
+				if (published == null) {
+					return changes;
+				}
+				int[] rows = published.findRowsToReprice(taxRateByState, costByProduct, labourCostByProduct);
+				if (rows.length == 0) {
+					return changes;
+				}
+				// the copy keeps the rows where they are
+				OrderTable table = published.copy();
+				for (int row : rows) {
+					Order before = table.get(row);
+					Order after = table.get(row);
+					after.setProductInfo(tables.findProduct(after.getProductType()));
+					after.setTaxRate(tables.findTaxInfo(after.getState()).getTaxRate());
+					after.updateDetails();
+					table.set(row, after);
+					rollups.replace(before, after);
+					changes.add(new RepriceReport.Change(before, after));
+				}
+				if (!changes.isEmpty()) {
+					saveChange(date, table, () -> dao.saveChanges(date, table.toList()));
+				}
+			} finally {
+				unlockChange(lock, !changes.isEmpty());
+			}
+			return changes;
+		}).collect(Collectors.toList());
+
+		// report in date order
+		List<RepriceReport.Change> changes = new ArrayList<>();
+		List<LocalDate> written = new ArrayList<>();
+		for (int i = 0; i < future.size(); i++) {
+			if (!changed.get(i).isEmpty()) {
+				changes.addAll(changed.get(i));
+				written.add(future.get(i));
+			}
+		}
+		return new RepriceReport(changes, written);
+	}
+
+	/// Switches between loading every order at startup and loading each
+	/// date on demand, keeping at most cacheSize dates in memory
+	/// must be called before initialise
+	public void setLazyLoading(boolean lazyLoading, int cacheSize) {
+		this.lazyLoading = lazyLoading;
+		this.partitionCacheSize = cacheSize;
+	}
+
+	/// Saves changes on a background writer that writes each changed date
+	/// once every intervalMillis, callers wait once maxPendingChanges are
+	/// waiting to be saved. 0 saves every change as it is made
+	/// must be called before initialise
+	public void setWriteBehind(long intervalMillis, int maxPendingChanges) {
+		this.writeBehindMillis = intervalMillis;
+		this.writeBehindQueue = maxPendingChanges;
+	}
+
+	/// Waits until every change made so far is saved, false if that took
+	/// too long
+	@Override
+	public boolean flush() {
+		return writeBehind == null || writeBehind.flush(FLUSH_TIMEOUT_MILLIS);
+	}
+
+	/// Saves every change, stops the background writer and closes the dao
+	/// so its journal is folded into the order files. Changes made
+	/// afterwards are written straight to their files
+	@Override
+	public boolean shutdown() {
+		boolean saved = true;
+		WriteBehind stopping = writeBehind;
+		if (stopping != null) {
+			writeBehind = null;
+			writeBehindMillis = 0;
+			// let changes already handed to the writer finish before the last flush
+			locks.lockAll();
+			locks.unlockAll();
+			saved = stopping.shutdown(FLUSH_TIMEOUT_MILLIS);
+		}
+		return dao.close() && saved;
+	}
+
+	// gets the orders for a date, loading them from file if not in memory
+	// the caller holds the date's lock
+	// the table is published and must not be changed, copy it instead
+	private OrderTable getPartition(LocalDate date) {
+		if (!orderDates.contains(date)) {
+			return null;
+		}
+		return partitions.get(date, d -> {
+			List<Order> orders = dao.getOrders(d);
+			if (orders == null) {
+				return null;
+			}
+			OrderTable table = toTable(d, orders);
+			firstLoad(d, table);
+			return table;
+		});
+	}
+
+	// adds a date's orders to the index and the totals the first time its
+	// partition loads, a date loaded again after an eviction is already in
+	// both and kept up to date by every change since
+	private void firstLoad(LocalDate date, OrderTable orders) {
+		loadedDates.computeIfAbsent(date, d -> {
+			indexOrders(d, orders.getOrderNumbers());
+			rollups.addDay(d, orders.asList());
+			return Boolean.TRUE;
+		});
+	}
+
+	private void indexOrders(LocalDate date, int[] orderNumbers) {
+		int epochDay = (int) date.toEpochDay();
+		indexLock.writeLock().lock();
+		try {
+			for (int orderNumber : orderNumbers) {
+				int old = orderIndex.put(orderNumber, epochDay);
+				if (old != IntIntMap.NO_VALUE && old != epochDay) {
+					duplicateOrderNumbers = true;
+				}
+			}
+		} finally {
+			indexLock.writeLock().unlock();
+		}
+	}
+
+	// only drops the entry if it points at date, a number repeated on
+	// another date keeps that date's entry
+	private void unindexOrder(LocalDate date, int orderNumber) {
+		indexLock.writeLock().lock();
+		try {
+			if (orderIndex.get(orderNumber) == date.toEpochDay()) {
+				orderIndex.remove(orderNumber);
+			}
+		} finally {
+			indexLock.writeLock().unlock();
+		}
+	}
+
+	// the epoch day an order number is indexed under, NO_VALUE if none
+	private int indexedDay(int orderNumber) {
+		indexLock.readLock().lock();
+		try {
+			return orderIndex.get(orderNumber);
+		} finally {
+			indexLock.readLock().unlock();
+		}
+	}
+
+	// false only when the order number is known not to be on the date
+	// a date that has not loaded yet is not in the index
+	private boolean mayBeOnDate(LocalDate date, int orderNumber) {
+		return duplicateOrderNumbers || !loadedDates.containsKey(date)
+				|| indexedDay(orderNumber) == date.toEpochDay();
+	}
+
+	private OrderTable toTable(LocalDate date, List<Order> orders) {
+		return OrderTable.of(date, orders, states, productTypes);
+	}
+
+	// takes a date's write lock for a change, with write behind on it first
+	// waits for room in the queue, before the lock as the writer needs it
+	private Lock lockForChange(LocalDate date) {
+		WriteBehind wb = writeBehind;
+		if (wb != null) {
+			wb.acquire();
+		}
+		Lock lock = locks.forDate(date).writeLock();
+		lock.lock();
+		return lock;
+	}
+
+	// saved is false if the change was not made, giving its room back
+	private void unlockChange(Lock lock, boolean saved) {
+		lock.unlock();
+		WriteBehind wb = writeBehind;
+		if (!saved && wb != null) {
+			wb.release();
+		}
+	}
+
+	// keeps a partition cached until a change to it is saved, either now by
+	// save or later by the background writer
+	// the caller holds the date's write lock from lockForChange, orders is
+	// a new table and is published here
+	private void saveChange(LocalDate date, OrderTable orders, Runnable save) {
+		partitions.markDirty(date);
+		partitions.put(date, orders);
+		WriteBehind wb = writeBehind;
+		if (wb != null) {
+			wb.changed(date);
+			return;
+		}
+		save.run();
+		partitions.markClean(date);
+	}
+
+	// the background writer's save of one date, the whole date is written
+	// from what is in memory however many changes it has had
+	// the read lock is held through the write so no newer save of the date
+	// can land first and be overwritten
+	private void saveDate(LocalDate date) {
+		Lock lock = locks.forDate(date).readLock();
+		lock.lock();
+		try {
+			OrderTable table = partitions.get(date);
+			if (table != null && !dao.saveChanges(date, table.toList())) {
+				throw new IllegalStateException("the order file could not be written");
+			}
+			// the partition can be evicted again unless it has changed since
+			WriteBehind wb = writeBehind;
+			if (wb == null || !wb.isPending(date)) {
+				partitions.markClean(date);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
 	@Override
 	public List<Order> getOrdersByDate(LocalDate date) {
 
-		return map.get(date);
+		OrderTable orders = readPartition(date);
+		return orders == null ? null : orders.toList();
 	}
 
+	/// The orders a query matches in date then order number order, each
+	/// order is built only as the stream reaches it
+	/// by default the stream reads one snapshot of every date, with lazy
+	/// loading each date is read as the stream reaches it
 	@Override
-	public int addOrder(Order order) {
+	public Stream<Order> streamOrders(OrderQuery query) {
+		int[] ids = columnFilter(query);
+		if (ids == null) {
+			return Stream.empty();
+		}
+		QuerySource source = querySource(query.getFrom(), query.getTo());
+		Stream<LocalDate> dates = query.isParallel() ? source.dates.parallelStream() : source.dates.stream();
+		Stream<Order> orders = dates.flatMap(date -> {
+			OrderTable table = source.tables.apply(date);
+			return table == null ? Stream.empty()
+					: IntStream.of(table.findRows(ids[0], ids[1])).mapToObj(table::get);
+		});
+		return query.getFilter() == null ? orders : orders.filter(query.getFilter());
+	}
+
+	/// Up to pageSize of the orders a query matches, after the cursor from
+	/// the page before or from the start when cursor is null
+	/// throws IllegalArgumentException for a cursor this did not hand out
+	@Override
+	public OrderPage getOrderPage(OrderQuery query, String cursor, int pageSize) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("Page size must be at least 1");
+		}
+		LocalDate afterDate = null;
+		int afterNumber = 0;
+		if (cursor != null) {
+			int slash = cursor.indexOf('/');
+			try {
+				afterDate = LocalDate.parse(cursor.substring(0, Math.max(slash, 0)));
+				afterNumber = Integer.parseInt(cursor.substring(slash + 1));
+			} catch (RuntimeException e) {
+				throw new IllegalArgumentException("Bad page cursor " + cursor);
+			}
+		}
 
-		order.setOrderNumber(nextOrderNum);
-		nextOrderNum++;
+		List<Order> page = new ArrayList<>(Math.min(pageSize, 1024));
+		int[] ids = columnFilter(query);
+		if (ids == null) {
+			return new OrderPage(page, null);
+		}
+		LocalDate from = query.getFrom();
+		if (afterDate != null && (from == null || afterDate.isAfter(from))) {
+			from = afterDate;
+		}
+		QuerySource source = querySource(from, query.getTo());
+		Predicate<Order> filter = query.getFilter();
 
-		LocalDate date = order.getOrderDate();
+		for (LocalDate date : source.dates) {
+			OrderTable table = source.tables.apply(date);
+			if (table == null) {
+				continue;
+			}
+			for (int row : table.findRows(ids[0], ids[1])) {
+				if (date.equals(afterDate) && table.getOrderNumber(row) <= afterNumber) {
+					continue;
+				}
+				Order o = table.get(row);
+				if (filter != null && !filter.test(o)) {
+					continue;
+				}
+				if (page.size() == pageSize) {
+					// one more match, so there is a next page
+					Order last = page.get(pageSize - 1);
+					return new OrderPage(page, last.getOrderDate() + "/" + last.getOrderNumber());
+				}
+				page.add(o);
+			}
+		}
+		return new OrderPage(page, null);
+	}
 
-		// get list of orders for that day
-		List<Order> orders = map.get(date);
+	// the dates a range query walks and how it gets each date's table
+	private static final class QuerySource {
+		private final List<LocalDate> dates;
+		private final Function<LocalDate, OrderTable> tables;
 
-		// if this is the first order for that day
-		if (orders == null) {
-			orders = new ArrayList<>();
+		private QuerySource(List<LocalDate> dates, Function<LocalDate, OrderTable> tables) {
+			this.dates = dates;
+			this.tables = tables;
+		}
+	}
 
+	private QuerySource querySource(LocalDate from, LocalDate to) {
+		if (!lazyLoading) {
+			// one snapshot so the whole query sees one point in time
+			PartitionSnapshot snapshot = partitions.snapshot();
+			return new QuerySource(snapshot.getDates(from, to), snapshot::get);
+		}
+		NavigableSet<LocalDate> dates = orderDates;
+		if (from != null) {
+			dates = dates.tailSet(from, true);
+		}
+		if (to != null) {
+			dates = dates.headSet(to, true);
 		}
-		// add the order to order list and to map of orders
-		orders.add(order);
-		map.put(date, orders);
+		return new QuerySource(new ArrayList<>(dates), this::readPartition);
+	}
 
-		dao.saveChanges(date, map.get(date)); // saves the changes to file
-		return order.getOrderNumber();
+	// the query's state and product type as dictionary ids, ANY when not
+	// given, null when no order can match
+	private int[] columnFilter(OrderQuery query) {
+		ReferenceTables tables = reference;
+		int[] ids = { OrderTable.ANY, OrderTable.ANY };
+		if (query.getState() != null) {
+			// stored as the tax file spells it
+			TaxInfo ti = tables.findTaxInfo(query.getState());
+			ids[0] = states.find(ti == null ? query.getState() : ti.getStateAbbreviation());
+		}
+		if (query.getProductType() != null) {
+			Product p = tables.findProduct(query.getProductType());
+			ids[1] = productTypes.find(p == null ? query.getProductType() : p.getProductType());
+		}
+		return ids[0] == StringDictionary.MISSING || ids[1] == StringDictionary.MISSING ? null : ids;
 	}
 
+	/// The totals of a day's orders, state and product type null for all
 	@Override
-	public boolean editOrder(Order order) {
+	public Rollup getRollup(LocalDate date, String state, String productType) {
+		int[] ids = rollupIds(state, productType);
+		if (ids == null) {
+			return Rollup.EMPTY;
+		}
+		loadForTotals(Collections.singleton(date));
+		return rollups.getDay(date, ids[0], ids[1]);
+	}
+
+	/// The totals of a month's orders, or of every order when month is null
+	@Override
+	public Rollup getRollup(YearMonth month, String state, String productType) {
+		int[] ids = rollupIds(state, productType);
+		if (ids == null) {
+			return Rollup.EMPTY;
+		}
+		loadForTotals(datesIn(month));
+		return month == null ? rollups.getAllTime(ids[0], ids[1]) : rollups.getMonth(month, ids[0], ids[1]);
+	}
+
+	/// A month's totals by state as the orders spell it, every order when
+	/// month is null
+	@Override
+	public Map<String, Rollup> getRollupsByState(YearMonth month) {
+		loadForTotals(datesIn(month));
+		return rollups.getByState(month);
+	}
+
+	@Override
+	public Map<String, Rollup> getRollupsByProductType(YearMonth month) {
+		loadForTotals(datesIn(month));
+		return rollups.getByProductType(month);
+	}
+
+	// the totals only cover loaded dates, in lazy mode the dates asked about
+	// are loaded first, in parallel. once loaded a date stays in the totals
+	// so only the first question about a month reads its files
+	private void loadForTotals(Collection<LocalDate> dates) {
+		dates.parallelStream().filter(date -> !loadedDates.containsKey(date)).forEach(this::readPartition);
+	}
+
+	// every date when month is null
+	private Collection<LocalDate> datesIn(YearMonth month) {
+		return month == null ? orderDates : orderDates.subSet(month.atDay(1), true, month.atEndOfMonth(), true);
+	}
+
+	// like the range query filter, the tables and the totals share the
+	// dictionaries so the ids are the same, null when no order can match
+	private int[] rollupIds(String state, String productType) {
+		return columnFilter(OrderQuery.all().state(state).productType(productType));
+	}
+
+	// a date's published orders for a reader, only a date that has to be
+	// read from file takes the lock so a save cant race the load
+	private OrderTable readPartition(LocalDate date) {
+		OrderTable orders = partitions.get(date);
+		if (orders != null || !orderDates.contains(date)) {
+			return orders;
+		}
+		Lock lock = locks.forDate(date).readLock();
+		lock.lock();
+		try {
+			return getPartition(date);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int addOrder(Order order) {
+
+		// new numbers come from the dao's persisted sequence
+		order.setOrderNumber(dao.allocateOrderNumbers(1));
 
 		LocalDate date = order.getOrderDate();
-		int orderNumber = order.getOrderNumber();
+		Lock lock = lockForChange(date);
+		boolean saved = false;
+		try {
+			// get list of orders for that day
+			OrderTable orders = getPartition(date);
+
+			// if this is the first order for that day
+			if (orders == null) {
+				orders = new OrderTable(date, states, productTypes);
+				orderDates.add(date);
+				loadedDates.put(date, Boolean.TRUE);
+			} else {
+				orders = orders.copy();
+			}
+			// add the order to order list and record only the new order
+			orders.add(order);
+			rollups.add(order);
+			indexOrders(date, new int[] { order.getOrderNumber() });
+			saveChange(date, orders, () -> dao.appendOrder(date, order));
+			saved = true;
+		} finally {
+			unlockChange(lock, saved);
+		}
+		return order.getOrderNumber();
+	}
 
-		List<Order> orders = map.get(date); // get the orders for the order date
+	/// Imports orders from CSV lines of OrderDate,CustomerName,State,
+	/// ProductType,Area with the date as MM-dd-yyyy, a header line is skipped
+	/// the name may hold commas, it is everything between the date and the
+	/// last three fields
+	@Override
+	public ImportResult importOrders(Reader in) throws IOException {
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(in)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		}
+
+		// parse in parallel, a line that cant be parsed leaves a null
+		Order[] parsed = new Order[lines.size()];
+		String[] parseErrors = new String[lines.size()];
+		IntStream.range(0, lines.size()).parallel().forEach(i -> {
+			String line = lines.get(i);
+			if (line.isEmpty() || (i == 0 && line.startsWith("OrderDate"))) {
+				return;
+			}
+			try {
+				parsed[i] = parseImportLine(line);
+			} catch (RuntimeException e) {
+				parseErrors[i] = "Could not read order, " + e.getMessage();
+			}
+		});
+
+		List<Order> orders = new ArrayList<>();
+		List<Integer> lineNumbers = new ArrayList<>();
+		TreeMap<Integer, List<String>> errors = new TreeMap<>();
+		for (int i = 0; i < parsed.length; i++) {
+			if (parsed[i] != null) {
+				orders.add(parsed[i]);
+				lineNumbers.add(i + 1);
+			} else if (parseErrors[i] != null) {
+				errors.computeIfAbsent(i + 1, n -> new ArrayList<>()).add(parseErrors[i]);
+			}
+		}
 
-		int index = -1;
+		return importOrders(orders, lineNumbers, errors);
+	}
 
-		// find the index of the order in the list of orders
-		for (Order ord : orders) {
-			if (ord.getOrderNumber() == orderNumber) {
-				index = orders.indexOf(ord);
-				break;
+	/// Validates, prices and saves a batch of new orders, each date that
+	/// gets orders is written once
+	@Override
+	public ImportResult importOrders(List<Order> orders) {
+		List<Integer> positions = new ArrayList<>(orders.size());
+		for (int i = 0; i < orders.size(); i++) {
+			positions.add(i + 1);
+		}
+		return importOrders(orders, positions, new TreeMap<>());
+	}
+
+	// errors are collected by line number so they come out in line order
+	private ImportResult importOrders(List<Order> orders, List<Integer> lineNumbers,
+			TreeMap<Integer, List<String>> errors) {
+
+		// validate everything first, only valid orders go any further
+		ValidationReport report = validateOrders(orders);
+		List<Order> valid = new ArrayList<>(orders.size() - report.getInvalidCount());
+		for (int i = 0; i < orders.size(); i++) {
+			if (report.isValid(i)) {
+				valid.add(orders.get(i));
 			}
 		}
+		for (ValidationReport.FieldError e : report.getErrors()) {
+			errors.computeIfAbsent(lineNumbers.get(e.getIndex()), n -> new ArrayList<>()).add(e.getMessage());
+		}
 
-		orders.set(index, order); // overwrite the order in the list of orders
-		// add to map of orders and save
-		map.put(date, orders);
-		dao.saveChanges(date, map.get(date));
+		// price in parallel, each order only touches itself
+		valid.parallelStream().forEach(this::configureOrder);
 
-		return true;
+		// one block of order numbers for the whole import
+		int first = valid.isEmpty() ? 0 : dao.allocateOrderNumbers(valid.size());
+		Map<LocalDate, List<Order>> byDate = new TreeMap<>();
+		for (int i = 0; i < valid.size(); i++) {
+			Order o = valid.get(i);
+			o.setOrderNumber(first + i);
+			byDate.computeIfAbsent(o.getOrderDate(), d -> new ArrayList<>()).add(o);
+		}
+
+		// add each date's orders and write the date once
+		byDate.forEach((date, added) -> {
+			Lock lock = lockForChange(date);
+			boolean saved = false;
+			try {
+				OrderTable table = getPartition(date);
+				if (table == null) {
+					table = new OrderTable(date, states, productTypes, added.size());
+					orderDates.add(date);
+					loadedDates.put(date, Boolean.TRUE);
+				} else {
+					table = table.copy();
+				}
+				int[] numbers = new int[added.size()];
+				for (int i = 0; i < numbers.length; i++) {
+					table.add(added.get(i));
+					rollups.add(added.get(i));
+					numbers[i] = added.get(i).getOrderNumber();
+				}
+				indexOrders(date, numbers);
+				OrderTable updated = table;
+				saveChange(date, table, () -> dao.saveChanges(date, updated.toList()));
+				saved = true;
+			} finally {
+				unlockChange(lock, saved);
+			}
+		});
+
+		List<String> messages = new ArrayList<>();
+		errors.forEach((line, list) -> list.forEach(m -> messages.add("Line " + line + ": " + m)));
+		return new ImportResult(valid.size(), errors.size(), first, messages);
+	}
+
+	private static Order parseImportLine(String line) {
+		int firstComma = line.indexOf(',');
+		int areaComma = line.lastIndexOf(',');
+		int productComma = line.lastIndexOf(',', areaComma - 1);
+		int stateComma = line.lastIndexOf(',', productComma - 1);
+		if (firstComma < 0 || stateComma <= firstComma) {
+			throw new IllegalArgumentException("expected 5 fields");
+		}
+
+		LocalDate date = LocalDate.parse(line.substring(0, firstComma).trim(), IMPORT_DATE_FORMAT);
+		String name = line.substring(firstComma + 1, stateComma).trim();
+		String state = line.substring(stateComma + 1, productComma).trim();
+		String productType = line.substring(productComma + 1, areaComma).trim();
+		BigDecimal area = new BigDecimal(line.substring(areaComma + 1).trim());
+		return new Order(date, name, state, productType, area);
 	}
 
 	@Override
-	public boolean removeOrder(Order order) {
+	public boolean editOrder(Order order) throws OrderNotFoundException {
+
 		LocalDate date = order.getOrderDate();
 		int orderNumber = order.getOrderNumber();
 
-		List<Order> orders = map.get(date);
+		Lock lock = lockForChange(date);
+		boolean saved = false;
+		try {
+			OrderTable orders = copyForChange(date, orderNumber); // get the orders for the order date
+
+			// find the index of the order in the list of orders
+			int index = orders.indexOf(orderNumber);
+
+			Order before = orders.get(index);
+			orders.set(index, order); // overwrite the order in the list of orders
+			rollups.replace(before, order);
+			// save the changes
+			saveChange(date, orders, () -> dao.updateOrder(date, order));
+			saved = true;
+		} finally {
+			unlockChange(lock, saved);
+		}
 
-		int index = -1;
+		return true;
+	}
 
-		for (Order ord : orders) {
-			if (ord.getOrderNumber() == orderNumber) {
-				index = orders.indexOf(ord);
-				break;
-			}
-		}
+	@Override
+	public boolean removeOrder(Order order) throws OrderNotFoundException {
+		LocalDate date = order.getOrderDate();
+		int orderNumber = order.getOrderNumber();
 
-		orders.remove(index); // remove the order from the orders and save changes
-		dao.saveChanges(order.getOrderDate(), map.get(order.getOrderDate()));
+		Lock lock = lockForChange(date);
+		boolean saved = false;
+		try {
+			OrderTable orders = copyForChange(date, orderNumber);
+
+			int index = orders.indexOf(orderNumber);
+
+			Order removed = orders.get(index);
+			orders.remove(index);
+			rollups.remove(removed);
+			unindexOrder(date, orderNumber); // remove the order from the orders and save changes
+			saveChange(date, orders, () -> dao.deleteOrder(date, orderNumber));
+			saved = true;
+		} finally {
+			unlockChange(lock, saved);
+		}
 		return true;
 	}
 
+	// a copy of the date's table to change, the caller holds the date's
+	// write lock. the order may have gone since the caller looked it up
+	private OrderTable copyForChange(LocalDate date, int orderNumber) throws OrderNotFoundException {
+		OrderTable orders = getPartition(date);
+		if (orders == null || orders.indexOf(orderNumber) < 0) {
+			throw new OrderNotFoundException(
+					"The combination of order date and order number do not match an existing order");
+		}
+		return orders.copy();
+	}
+
 	@Override
 	public boolean exportData() {
 
-		dao.exportOrders(map);
+		// one snapshot of the partitions is one consistent point in time
+		// orders are built from its tables as the export reaches them
+		if (!lazyLoading) {
+			Map<LocalDate, List<Order>> map = new HashMap<>();
+			partitions.snapshot().forEach((date, orders) -> map.put(date, orders.asList()));
+			dao.exportOrders(map);
+			return false;
+		}
+
+		// dates not in memory are read from file, which a change could write
+		// part way through, so every date is locked instead
+		locks.lockAll();
+		try {
+			// read everything from file, the cached partitions are the latest
+			Map<LocalDate, List<Order>> map = dao.getOrders();
+			partitions.snapshot().forEach((date, orders) -> map.put(date, orders.asList()));
+			dao.exportOrders(map);
+		} finally {
+			locks.unlockAll();
+		}
 		return false;
 	}
 
 	@Override
 	public List<Product> getProducts() {
 
-		return products;
+		return reference.getProducts();
 	}
 
 	@Override
 	public boolean checkOrderDateExists(LocalDate date) throws NoOrdersForDateException {
 
-		List<Order> orders = map.get(date);
+		OrderTable orders = readPartition(date);
+		int size = orders == null ? 0 : orders.size();
 
-		if (orders == null || orders.size() == 0) {
+		if (size == 0) {
 			throw new NoOrdersForDateException("There are no orders for that date");
 		} else {
 			return true;
@@ -161,77 +886,115 @@ public class Service implements IService {
 
 	@Override
 	public boolean validateOrderDate(LocalDate date) throws InvalidDateException {
-		LocalDate currDate = LocalDate.now();
-
-		if (currDate.isBefore(date)) {
+		if (OrderValidator.isValidOrderDate(date, LocalDate.now())) {
 			return true;
-		} else {
-			throw new InvalidDateException("Order date must be in the future");
 		}
-
+		throw new InvalidDateException(OrderValidator.Field.ORDER_DATE.getMessage());
 	}
 
 	@Override
 	public boolean validateName(String name) throws InvalidNameException {
-		Pattern p = Pattern.compile("[a-zA-Z0-9., ]+");
-		Matcher m = p.matcher(name);
-		boolean test = m.matches();
-
-		if (test) {
+		if (OrderValidator.isValidName(name)) {
 			return true;
-		} else {
-			throw new InvalidNameException("Name does not meet format specifications");
 		}
-
+		throw new InvalidNameException(OrderValidator.Field.CUSTOMER_NAME.getMessage());
 	}
 
 	@Override
 	public boolean validateState(String state) throws InvalidStateException {
-		for (TaxInfo ti : taxes) {
-			if (ti.getStateAbbreviation().equals(state)) {
-				return true;
-			}
+		if (reference.findTaxInfo(state) != null) {
+			return true;
 		}
-		throw new InvalidStateException("Invalid input or state is unsupported");
+		throw new InvalidStateException(OrderValidator.Field.STATE.getMessage());
 	}
 
 	@Override
 	public boolean validateArea(BigDecimal area) throws InvalidAreaException {
-		try {
+		if (OrderValidator.isValidArea(area)) {
+			return true;
+		}
+		throw new InvalidAreaException(OrderValidator.Field.AREA.getMessage());
+	}
 
-			if (area.compareTo(new BigDecimal("100.00")) < 0) {
-				throw new InvalidAreaException("Area must be at least 100.00");
-			}
-		} catch (NullPointerException e) {
-			throw new InvalidAreaException("Area must be at least 100.00");
+	/// Checks a batch of new orders without throwing, the report lists the
+	/// fields that failed for each order
+	@Override
+	public ValidationReport validateOrders(List<Order> orders) {
+		return new OrderValidator(reference, LocalDate.now()).validate(orders);
+	}
+
+	/// The messages of the fields a new order fails on, empty if it can be
+	/// added
+	@Override
+	public List<String> checkOrder(Order order) {
+		return fieldErrors(reference, order, true);
+	}
+
+	/// Sets the given fields on an order being edited along with its costs
+	/// and tax, ready for editOrder. Past orders can still be edited so only
+	/// the other fields are checked
+	/// returns the messages of the fields that failed and leaves the order
+	/// alone if any did
+	@Override
+	public List<String> reviseOrder(Order order, String customerName, String state, String productType,
+			BigDecimal area) {
+		ReferenceTables tables = reference;
+		List<String> problems = fieldErrors(tables,
+				new Order(order.getOrderDate(), customerName, state, productType, area), false);
+		if (problems.isEmpty()) {
+			configureOrder(order, customerName, state, tables.findProduct(productType), area);
 		}
+		return problems;
+	}
 
-		return true;
+	// the failed field messages, without the date check when checkDate is false
+	private static List<String> fieldErrors(ReferenceTables tables, Order order, boolean checkDate) {
+		ValidationReport report = new OrderValidator(tables, LocalDate.now()).validate(Collections.singletonList(order));
+		return report.getErrors().stream().filter(e -> checkDate || e.getField() != OrderValidator.Field.ORDER_DATE)
+				.map(ValidationReport.FieldError::getMessage).collect(Collectors.toList());
 	}
 
 	@Override
 	public Order getOrder(LocalDate date, int orderNumber) throws OrderNotFoundException {
 
-		List<Order> orders = map.get(date);
-
-		for (Order ord : orders) {
-			if (ord.getOrderNumber() == orderNumber) {
-				// create a deep copy of the date so any edits are not saved unless confirmed
-				Order temp = new Order(ord.getOrderDate(), ord.getCustomerName(), ord.getState(), ord.getProductType(),
-						ord.getArea());
-				temp.setOrderNumber(ord.getOrderNumber());
-				return temp;
-			}
+		Order ord = findOrder(date, orderNumber);
+		if (ord != null) {
+			// create a deep copy of the date so any edits are not saved unless confirmed
+			Order temp = new Order(ord.getOrderDate(), ord.getCustomerName(), ord.getState(), ord.getProductType(),
+					ord.getArea());
+			temp.setOrderNumber(ord.getOrderNumber());
+			return temp;
 		}
 
 		throw new OrderNotFoundException(
 				"The combination of order date and order number do not match an existing order");
 	}
 
+	// finds an order from its number alone
+	@Override
+	public Order getOrder(int orderNumber) throws OrderNotFoundException {
+		int epochDay = indexedDay(orderNumber);
+		// in lazy mode the order may be on a date not loaded yet, those are
+		// loaded newest first until it turns up
+		for (LocalDate date : orderDates.descendingSet()) {
+			if (epochDay != IntIntMap.NO_VALUE) {
+				break;
+			}
+			if (!loadedDates.containsKey(date)) {
+				readPartition(date);
+				epochDay = indexedDay(orderNumber);
+			}
+		}
+		if (epochDay == IntIntMap.NO_VALUE) {
+			throw new OrderNotFoundException("There is no order with that order number");
+		}
+		return getOrder(LocalDate.ofEpochDay(epochDay), orderNumber);
+	}
+
 	@Override
 	public List<TaxInfo> getTaxes() {
 
-		return taxes;
+		return reference.getTaxes();
 	}
 
 	/// given an order sets up any fields in the order that have yet to be
@@ -240,24 +1003,10 @@ public class Service implements IService {
 	@Override
 	public Order configureOrder(Order order) {
 		// update order details
-		String productType = order.getProductType();
-		String orderState = order.getState();
-		Product p = null;
-		BigDecimal taxRate = null;
-
-		for (Product prods : products) {
-			if (prods.getProductType().equals(productType)) {
-				p = prods;
-				break;
-			}
-		}
-
-		for (TaxInfo ti : taxes) {
-			if (ti.getStateAbbreviation().equals(orderState)) {
-				taxRate = ti.getTaxRate();
-				break;
-			}
-		}
+		// one table for both lookups in case of a reload part way through
+		ReferenceTables tables = reference;
+		Product p = tables.findProduct(order.getProductType());
+		BigDecimal taxRate = taxRateOf(tables, order, order.getState());
 
 		order.setProductInfo(p);
 		order.setTaxRate(taxRate);
@@ -274,17 +1023,9 @@ public class Service implements IService {
 		// update order details
 
 		order.setCustomerName(customerName);
-		order.setState(state);
 		order.setArea(area);
 
-		BigDecimal taxRate = null;
-
-		for (TaxInfo ti : taxes) {
-			if (ti.getStateAbbreviation().equals(state)) {
-				taxRate = ti.getTaxRate();
-				break;
-			}
-		}
+		BigDecimal taxRate = taxRateOf(reference, order, state);
 
 		order.setProductInfo(product);
 		order.setTaxRate(taxRate);
@@ -293,15 +1034,28 @@ public class Service implements IService {
 		return order;
 	}
 
-	@Override
-	public Order getOrderToDelete(LocalDate date, int orderNumber) throws OrderNotFoundException {
-		List<Order> orders = map.get(date);
+	// sets the order's state as the tax file spells it and returns its rate
+	private static BigDecimal taxRateOf(ReferenceTables tables, Order order, String state) {
+		TaxInfo ti = tables.findTaxInfo(state);
+		order.setState(ti == null ? state : ti.getStateAbbreviation());
+		return ti == null ? null : ti.getTaxRate();
+	}
 
-		for (Order ord : orders) {
-			if (ord.getOrderNumber() == orderNumber) {
+	// builds an order from its date's table, null if it is not there
+	private Order findOrder(LocalDate date, int orderNumber) {
+		if (!mayBeOnDate(date, orderNumber)) {
+			return null;
+		}
+		OrderTable orders = readPartition(date);
+		int index = orders == null ? -1 : orders.indexOf(orderNumber);
+		return index >= 0 ? orders.get(index) : null;
+	}
 
-				return ord;
-			}
+	@Override
+	public Order getOrderToDelete(LocalDate date, int orderNumber) throws OrderNotFoundException {
+		Order ord = findOrder(date, orderNumber);
+		if (ord != null) {
+			return ord;
 		}
 
 		throw new OrderNotFoundException(
@@ -0,0 +1,96 @@
+package com.wileyedge.flooring.service;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import com.wileyedge.flooring.service.OrderValidator.Field;
+
+/// Result of validating a batch of orders, which fields failed for each
+/// order by its position in the batch
+public class ValidationReport {
+
+	/// One failed field of one order
+	public static class FieldError {
+		private final int index;
+		private final Field field;
+
+		FieldError(int index, Field field) {
+			this.index = index;
+			this.field = field;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public Field getField() {
+			return field;
+		}
+
+		public String getMessage() {
+			return field.getMessage();
+		}
+
+		@Override
+		public String toString() {
+			return "Order " + (index + 1) + ": " + field.getMessage();
+		}
+	}
+
+	// a bit per failed field for each order
+	private final int[] failures;
+	private final int invalidCount;
+
+	ValidationReport(int[] failures) {
+		this.failures = failures;
+		int invalid = 0;
+		for (int f : failures) {
+			if (f != 0) {
+				invalid++;
+			}
+		}
+		this.invalidCount = invalid;
+	}
+
+	public int size() {
+		return failures.length;
+	}
+
+	public boolean isValid(int index) {
+		return failures[index] == 0;
+	}
+
+	public boolean isAllValid() {
+		return invalidCount == 0;
+	}
+
+	public int getInvalidCount() {
+		return invalidCount;
+	}
+
+	public Set<Field> getFailedFields(int index) {
+		Set<Field> fields = EnumSet.noneOf(Field.class);
+		for (Field f : Field.values()) {
+			if ((failures[index] & f.bit()) != 0) {
+				fields.add(f);
+			}
+		}
+		return fields;
+	}
+
+	// every failed field of every order, in order
+	public List<FieldError> getErrors() {
+		List<FieldError> errors = new ArrayList<>();
+		for (int i = 0; i < failures.length; i++) {
+			if (failures[i] != 0) {
+				for (Field f : getFailedFields(i)) {
+					errors.add(new FieldError(i, f));
+				}
+			}
+		}
+		return errors;
+	}
+
+}
@@ -0,0 +1,158 @@
+package com.wileyedge.flooring.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/// Saves changed order dates on one background thread instead of on the
+/// caller's. Changes only mark their date, the writer saves each marked date
+/// once per interval however many times it changed
+///
+/// the number of changes waiting to be saved is bounded, once it is full a
+/// caller waits in acquire until the writer has caught up. Every change has a
+/// number and awaitDurable waits until a change has been saved
+public class WriteBehind {
+
+	private final Consumer<LocalDate> save;
+	private final Semaphore room;
+	// changes waiting on each date
+	private final Map<LocalDate, Integer> pending = new ConcurrentHashMap<>();
+	private final AtomicLong changes = new AtomicLong();
+	// every change up to this one is saved, guarded by this
+	private long durable = 0;
+	private final ScheduledExecutorService writer;
+
+	/// save writes one date and throws if it cant, the date is then tried
+	/// again on the next pass
+	public WriteBehind(long intervalMillis, int maxPendingChanges, Consumer<LocalDate> save) {
+		if (intervalMillis < 1 || maxPendingChanges < 1) {
+			throw new IllegalArgumentException("Interval and queue size must be at least 1");
+		}
+		this.save = save;
+		this.room = new Semaphore(maxPendingChanges);
+		this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "order-writer");
+			t.setDaemon(true);
+			return t;
+		});
+		writer.scheduleWithFixedDelay(this::writePending, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/// Waits for room for one more change, must not be called while holding
+	/// a lock the save needs
+	public void acquire() {
+		if (!room.tryAcquire()) {
+			// full, start a pass now rather than at the next interval
+			wake();
+			room.acquireUninterruptibly();
+		}
+	}
+
+	/// Gives back room taken by acquire for a change that was not made
+	public void release() {
+		room.release();
+	}
+
+	/// Records a change to a date using room taken by acquire, returns the
+	/// change's number for awaitDurable
+	public long changed(LocalDate date) {
+		// pending first so a pass that has seen the number sees the date
+		pending.merge(date, 1, Integer::sum);
+		return changes.incrementAndGet();
+	}
+
+	public boolean isPending(LocalDate date) {
+		return pending.containsKey(date);
+	}
+
+	public int getPendingChanges() {
+		return pending.values().stream().mapToInt(Integer::intValue).sum();
+	}
+
+	// the number of the last change recorded
+	public long getChangeCount() {
+		return changes.get();
+	}
+
+	/// Waits until the change numbered change has been saved, false if that
+	/// took longer than timeoutMillis
+	public synchronized boolean awaitDurable(long change, long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (durable < change) {
+			long wait = deadline - System.currentTimeMillis();
+			if (wait <= 0) {
+				return false;
+			}
+			wait(wait);
+		}
+		return true;
+	}
+
+	/// Saves every change made so far now, false if that took longer than
+	/// timeoutMillis
+	public boolean flush(long timeoutMillis) {
+		long change = changes.get();
+		wake();
+		try {
+			return awaitDurable(change, timeoutMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/// Saves everything and stops the writer, false if the save took longer
+	/// than timeoutMillis
+	public boolean shutdown(long timeoutMillis) {
+		boolean flushed = flush(timeoutMillis);
+		writer.shutdown();
+		return flushed;
+	}
+
+	private void wake() {
+		try {
+			writer.execute(this::writePending);
+		} catch (RejectedExecutionException e) {
+			// shut down, nothing more will be written
+		}
+	}
+
+	// one pass of the writer, saves each pending date once
+	private void writePending() {
+		long seen = changes.get();
+		boolean allSaved = true;
+		for (LocalDate date : new ArrayList<>(pending.keySet())) {
+			// changes made from here on mark the date again
+			Integer count = pending.remove(date);
+			if (count == null) {
+				continue;
+			}
+			try {
+				save.accept(date);
+				room.release(count);
+			} catch (RuntimeException e) {
+				System.out.println("  * Could not save orders for " + date + ", will retry: " + e.getMessage());
+				pending.merge(date, count, Integer::sum);
+				allSaved = false;
+			}
+		}
+
+		if (allSaved) {
+			synchronized (this) {
+				if (seen > durable) {
+					durable = seen;
+					notifyAll();
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.wileyedge.flooring.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wileyedge.flooring.controller.BatchController;
+import com.wileyedge.flooring.controller.BatchReport;
+import com.wileyedge.flooring.dao.Dao;
+import com.wileyedge.flooring.model.Order;
+import com.wileyedge.flooring.service.Service;
+
+public class BatchControllerTest {
+
+	Path root;
+	Service service;
+	// whole date writes, adds and edits go through the same save
+	AtomicInteger saves = new AtomicInteger();
+
+	@Before
+	public void setUp() throws Exception {
+		// a store of its own so nothing is left behind
+		root = Files.createTempDirectory("batch");
+		Path data = Files.createDirectories(root.resolve("Data"));
+		Files.createDirectories(root.resolve("Orders"));
+		Files.copy(Paths.get("res", "Test", "Data", "Products.txt"), data.resolve("Products.txt"));
+		Files.copy(Paths.get("res", "Test", "Data", "Taxes.txt"), data.resolve("Taxes.txt"));
+		Dao dao = new Dao() {
+			@Override
+			public boolean saveChanges(LocalDate date, List<Order> orders) {
+				saves.incrementAndGet();
+				return super.saveChanges(date, orders);
+			}
+		};
+		dao.setTestFiles(root.resolve("Orders").toString(), data.resolve("Products.txt").toString(),
+				data.resolve("Taxes.txt").toString(), root.resolve("DataExport.txt").toString());
+		dao.setJournalling(false);
+
+		service = new Service(dao);
+		service.setWriteBehind(60_000, 10000);
+		service.initialise();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		service.shutdown();
+		try (Stream<Path> files = Files.walk(root)) {
+			files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+		}
+	}
+
+	@Test
+	public void testRunBatch() throws Exception {
+		StringBuilder commands = new StringBuilder("# two dates of new orders\n");
+		for (int i = 0; i < 50; i++) {
+			commands.append("add,2099-01-0").append(1 + i % 2).append(",Smith, Jones Inc.,TX,Carpet,100\n");
+		}
+		commands.append("add,2099-01-01,Bad_Name,TX,Carpet,100\n");
+		commands.append("get,2099-01-02\n");
+		commands.append("edit,2099-01-01,1,Ada King,,,200\n");
+		commands.append("remove,2099-01-02,2\n");
+		commands.append("remove,2099-01-02,999\n");
+		commands.append("launch,now\n");
+
+		ByteArrayOutputStream printed = new ByteArrayOutputStream();
+		BatchReport report = new BatchController(service, new PrintStream(printed, true))
+				.run(new StringReader(commands.toString()));
+
+		assertEquals(56, report.getCommands());
+		assertEquals(Integer.valueOf(51), report.getCounts().get("add"));
+		assertEquals(3, report.getFailed());
+		assertTrue(report.getFailures().get(0).startsWith("Line 52: "));
+		assertTrue(report.summary().contains("56 commands in"));
+
+		// the query saw the adds before it and printed each order
+		String output = printed.toString();
+		assertEquals(25, output.lines().filter(l -> l.contains("Smith, Jones Inc.")).count());
+
+		Order edited = service.getOrder(LocalDate.of(2099, 1, 1), 1);
+		assertEquals("Ada King", edited.getCustomerName());
+		assertEquals("TX", edited.getState());
+		assertEquals(0, new BigDecimal("200").compareTo(edited.getArea()));
+		assertEquals(24, service.getOrdersByDate(LocalDate.of(2099, 1, 2)).size());
+
+		// every change was saved at the end, each date once
+		assertEquals(2, saves.get());
+	}
+
+	// a get with too few or too many fields fails its line, the run goes on
+	@Test
+	public void testMalformedGet() throws Exception {
+		String commands = "add,2099-01-01,Ada,TX,Carpet,100\nget\nget,2099-01-01,1,extra\nget,2099-01-01,1\n";
+
+		ByteArrayOutputStream printed = new ByteArrayOutputStream();
+		BatchReport report = new BatchController(service, new PrintStream(printed, true))
+				.run(new StringReader(commands));
+
+		assertEquals(4, report.getCommands());
+		assertEquals(2, report.getFailed());
+		assertTrue(report.getFailures().get(0).startsWith("Line 2: "));
+		assertTrue(report.getFailures().get(1).startsWith("Line 3: "));
+		assertEquals(1, printed.toString().lines().filter(l -> l.contains("Ada")).count());
+	}
+
+}
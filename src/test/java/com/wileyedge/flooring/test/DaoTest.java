@@ -2,21 +2,35 @@ package com.wileyedge.flooring.test;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.wileyedge.flooring.dao.Dao;
+import com.wileyedge.flooring.dao.OrderEncoder;
+import com.wileyedge.flooring.dao.OrderSequence;
 import com.wileyedge.flooring.model.Order;
 import com.wileyedge.flooring.model.Product;
 import com.wileyedge.flooring.model.TaxInfo;
@@ -61,6 +75,9 @@ public class DaoTest {
 
 		assertEquals(orders.size(), 1);
 
+		// every order file should have loaded
+		assertTrue(dao.getLoadFailures().isEmpty());
+
 	}
 
 	public void testGetMaxOrderNumber(int expected) {
@@ -70,6 +87,164 @@ public class DaoTest {
 
 	}
 
+	@Test
+	public void testSnapshot() {
+
+		// first load writes the snapshot, second should read every date from it
+		Map<LocalDate, List<Order>> fromFiles = dao.getOrders();
+		Map<LocalDate, List<Order>> fromSnapshot = dao.getOrders();
+
+		assertEquals(fromFiles.size(), dao.getPartitionsFromSnapshot());
+		assertEquals(fromFiles.keySet(), fromSnapshot.keySet());
+		for (LocalDate date : fromFiles.keySet()) {
+			List<Order> expected = fromFiles.get(date);
+			List<Order> actual = fromSnapshot.get(date);
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.get(i).formatOrder(), actual.get(i).formatOrder());
+			}
+		}
+
+	}
+
+	// an edit that keeps the file's size and time is still seen
+	@Test
+	public void testSnapshotChecksumsFiles() throws Exception {
+		File folder = Files.createTempDirectory("snapshot").toFile();
+		try {
+			Dao fresh = new Dao();
+			fresh.setTestFiles(folder.getPath(), "res\\Test\\Data\\Products.txt", "res\\Test\\Data\\Taxes.txt",
+					"res\\Test\\Backup\\DataExport.txt");
+			fresh.setJournalling(false);
+			LocalDate date = LocalDate.of(2013, 6, 1);
+			Order order = new Order(date, "Ada", "TX", "Carpet", new BigDecimal("100.00"));
+			order.setProductInfo(new Product("Carpet", new BigDecimal("2.25"), new BigDecimal("2.10")));
+			order.setTaxRate(new BigDecimal("4.45"));
+			order.updateDetails();
+			order.setOrderNumber(1);
+			assertTrue(fresh.saveChanges(date, new ArrayList<>(Arrays.asList(order))));
+			assertEquals("Ada", fresh.getOrders().get(date).get(0).getCustomerName());
+
+			File file = new File(folder, "Orders_06012013.txt");
+			long modified = file.lastModified();
+			String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+			Files.write(file.toPath(), text.replace("Ada", "Bob").getBytes(StandardCharsets.UTF_8));
+			assertTrue(file.setLastModified(modified));
+
+			assertEquals("Bob", fresh.getOrders().get(date).get(0).getCustomerName());
+			assertEquals(0, fresh.getPartitionsFromSnapshot());
+		} finally {
+			for (File f : folder.listFiles()) {
+				f.delete();
+			}
+			folder.delete();
+		}
+	}
+
+	@Test
+	public void testOrderEncoder() throws Exception {
+
+		// the encoder has to write exactly what formatOrder does
+		String[] decimals = { "0", "0.00", "100", "249.00", "0.05", "-3.10", "1E+3", "0.0000001", "0.000001",
+				"123456789012345678.9", "99999999999999999999.99", "12345678901234567.8", null };
+		String[] names = { "Ada Lovelace", "Zo\u00eb, Inc.", "\u4e2d\u6587", "\ud83d\ude00", null };
+		Random random = new Random(12);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		OrderEncoder encoder = new OrderEncoder(bytes, 64);
+		StringBuilder expected = new StringBuilder();
+		LocalDate date = LocalDate.of(2013, 6, 1);
+		for (int i = 0; i < 2000; i++) {
+			BigDecimal[] d = new BigDecimal[8];
+			for (int j = 0; j < d.length; j++) {
+				String v = decimals[random.nextInt(decimals.length)];
+				d[j] = v == null ? null : new BigDecimal(v);
+			}
+			Order o = new Order(date, random.nextInt(), names[random.nextInt(names.length)], "TX", d[0], "Wood",
+					d[1], d[2], d[3], d[4], d[5], d[6], d[7]);
+			if (i % 7 == 0) {
+				date = date.plusDays(1);
+			}
+
+			encoder.writeOrder(o);
+			encoder.writeByte(',');
+			encoder.writeDate(date);
+			encoder.writeLineBreak();
+			expected.append(o.formatOrder()).append(',')
+					.append(date.format(DateTimeFormatter.ofPattern("MM-dd-yyyy"))).append("\r\n");
+		}
+		encoder.flush();
+
+		assertEquals(expected.toString(), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+
+	}
+
+	@Test
+	public void testInterning() {
+
+		// a second parse of the same file should reuse the first one's values
+		dao.setSnapshots(false);
+		Order first = dao.getOrders().get(LocalDate.of(2013, 6, 1)).get(0);
+		Order second = dao.getOrders().get(LocalDate.of(2013, 6, 1)).get(0);
+
+		assertNotSame(first, second);
+		assertSame(first.getState(), second.getState());
+		assertSame(first.getProductType(), second.getProductType());
+		assertSame(first.getTaxRate(), second.getTaxRate());
+		assertSame(first.getCostPerSquareFoot(), second.getCostPerSquareFoot());
+		assertTrue(dao.getFieldDictionary().getBytesSaved() > 0);
+
+	}
+
+	@Test
+	public void testOrderSequence() throws Exception {
+		File folder = Files.createTempDirectory("sequence").toFile();
+		File restarted = Files.createTempDirectory("sequence").toFile();
+		try {
+			// a folder without a mark starts after the seed
+			OrderSequence sequence = OrderSequence.open(folder, () -> 41);
+			assertEquals(42, sequence.allocate(1));
+			assertEquals(43, sequence.allocate(5));
+			assertEquals(48, sequence.peek());
+			assertTrue(sequence.getReserved() >= 48);
+
+			// threads never get the same number
+			ExecutorService pool = Executors.newFixedThreadPool(8);
+			List<Future<int[]>> taken = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				taken.add(pool.submit(() -> {
+					int[] numbers = new int[2000];
+					for (int i = 0; i < numbers.length; i++) {
+						numbers[i] = sequence.allocate(1);
+					}
+					return numbers;
+				}));
+			}
+			Set<Integer> seen = new HashSet<>();
+			for (Future<int[]> f : taken) {
+				for (int n : f.get()) {
+					assertTrue(seen.add(n));
+				}
+			}
+			pool.shutdown();
+			assertEquals(16000, seen.size());
+
+			// a restart carries on from the mark without asking for a seed
+			Files.copy(new File(folder, "orders.sequence").toPath(), new File(restarted, "orders.sequence").toPath());
+			OrderSequence reopened = OrderSequence.open(restarted, () -> {
+				throw new AssertionError("seed should not be needed");
+			});
+			assertTrue(reopened.allocate(1) >= sequence.peek());
+		} finally {
+			for (File dir : new File[] { folder, restarted }) {
+				for (File f : dir.listFiles()) {
+					f.delete();
+				}
+				dir.delete();
+			}
+		}
+	}
+
 	@Test
 	public void testGetTaxes() {
 		List<TaxInfo> taxes = dao.getTaxInfo();
@@ -151,6 +326,142 @@ public class DaoTest {
 
 	}
 
+	@Test
+	public void testAppendOrder() {
+
+		map = dao.getOrders();
+		LocalDate date = LocalDate.of(2013, 6, 1);
+
+		Order testOrder = new Order(date, "Test Customer 3", "TX", "Carpet", new BigDecimal("100.00"));
+		testOrder.setProductInfo(new Product("Carpet", new BigDecimal("2.25"), new BigDecimal("2.10")));
+		testOrder.setTaxRate(new BigDecimal("4.45"));
+		testOrder.updateDetails();
+		testOrder.setOrderNumber(3);
+
+		// append only the new order
+		assertTrue(dao.appendOrder(date, testOrder));
+
+		// both the existing and new order should be read back
+		List<Order> orders = dao.getOrders(date);
+		assertEquals(2, orders.size());
+		assertEquals("Test Customer 3", orders.get(1).getCustomerName());
+		assertEquals(testOrder.formatOrder(), orders.get(1).formatOrder());
+
+		// cleanup - rewrite the file with the original order
+		dao.saveChanges(date, map.get(date));
+		assertEquals(1, dao.getOrders(date).size());
+
+	}
+
+	@Test
+	public void testJournalCompaction() {
+
+		LocalDate date = LocalDate.of(2013, 6, 2);
+
+		Order testOrder = new Order(date, "Test Customer 4", "TX", "Carpet", new BigDecimal("100.00"));
+		testOrder.setProductInfo(new Product("Carpet", new BigDecimal("2.25"), new BigDecimal("2.10")));
+		testOrder.setTaxRate(new BigDecimal("4.45"));
+		testOrder.updateDetails();
+		testOrder.setOrderNumber(4);
+
+		// the add goes to the journal, fold it into the order file
+		assertTrue(dao.appendOrder(date, testOrder));
+		dao.compactJournal();
+
+		// reading the file without the journal should now see the order
+		Dao fileOnly = new Dao();
+		fileOnly.setTestFiles("res\\Test\\Orders", "res\\Test\\Data\\Products.txt", "res\\Test\\Data\\Taxes.txt",
+				"res\\Test\\Backup\\DataExport.txt");
+		fileOnly.setJournalling(false);
+		assertEquals(1, fileOnly.getOrders(date).size());
+
+		// cleanup - remove it again
+		assertTrue(dao.deleteOrder(date, 4));
+		dao.compactJournal();
+		assertEquals(0, fileOnly.getOrders(date).size());
+
+	}
+
+	// closing folds the journal into the order file and stops its threads
+	@Test
+	public void testJournalClose() throws Exception {
+		File folder = Files.createTempDirectory("journal").toFile();
+		try {
+			int before = journalThreads();
+			Dao journalled = new Dao();
+			journalled.setTestFiles(folder.getPath(), "res\\Test\\Data\\Products.txt",
+					"res\\Test\\Data\\Taxes.txt", "res\\Test\\Backup\\DataExport.txt");
+
+			LocalDate date = LocalDate.of(2013, 6, 2);
+			Order testOrder = new Order(date, "Test Customer 5", "TX", "Carpet", new BigDecimal("100.00"));
+			testOrder.setProductInfo(new Product("Carpet", new BigDecimal("2.25"), new BigDecimal("2.10")));
+			testOrder.setTaxRate(new BigDecimal("4.45"));
+			testOrder.updateDetails();
+			testOrder.setOrderNumber(5);
+			assertTrue(journalled.appendOrder(date, testOrder));
+			assertEquals(before + 2, journalThreads());
+			assertFalse(new File(folder, "Orders_06022013.txt").exists());
+
+			assertTrue(journalled.close());
+			assertEquals(before, journalThreads());
+			assertTrue(new File(folder, "Orders_06022013.txt").exists());
+			assertFalse(new File(folder, "journal.log").exists());
+
+			// the file alone now has the order
+			Dao fileOnly = new Dao();
+			fileOnly.setTestFiles(folder.getPath(), "res\\Test\\Data\\Products.txt",
+					"res\\Test\\Data\\Taxes.txt", "res\\Test\\Backup\\DataExport.txt");
+			fileOnly.setJournalling(false);
+			assertEquals("Test Customer 5", fileOnly.getOrders(date).get(0).getCustomerName());
+		} finally {
+			for (File f : folder.listFiles()) {
+				f.delete();
+			}
+			folder.delete();
+		}
+	}
+
+	private static int journalThreads() {
+		return (int) Thread.getAllStackTraces().keySet().stream()
+				.filter(t -> t.isAlive() && t.getName().startsWith("order-journal-")).count();
+	}
+
+	@Test
+	public void testExportMergesDates() throws FileNotFoundException {
+
+		// order numbers interleave across the dates and one date is out of order
+		Map<LocalDate, List<Order>> orders = new TreeMap<>();
+		LocalDate date1 = LocalDate.of(2013, 6, 1);
+		LocalDate date2 = LocalDate.of(2013, 6, 2);
+		orders.put(date1, new ArrayList<>(Arrays.asList(exportOrder(date1, 1), exportOrder(date1, 4),
+				exportOrder(date1, 5))));
+		orders.put(date2, new ArrayList<>(Arrays.asList(exportOrder(date2, 3), exportOrder(date2, 2))));
+
+		dao.exportOrders(orders);
+
+		// every order should come out in order number order with its date
+		Scanner sc = new Scanner(new File("res\\Test\\Backup\\DataExport.txt"));
+		sc.nextLine();
+		String[] expectedDates = { "06-01-2013", "06-02-2013", "06-02-2013", "06-01-2013", "06-01-2013" };
+		for (int i = 0; i < expectedDates.length; i++) {
+			String[] line = sc.nextLine().split(",");
+			assertEquals(String.valueOf(i + 1), line[0]);
+			assertEquals(expectedDates[i], line[12]);
+		}
+		assertFalse(sc.hasNextLine());
+		sc.close();
+
+	}
+
+	private Order exportOrder(LocalDate date, int orderNumber) {
+		Order o = new Order(date, "Export Test", "TX", "Carpet", new BigDecimal("100.00"));
+		o.setProductInfo(new Product("Carpet", new BigDecimal("2.25"), new BigDecimal("2.10")));
+		o.setTaxRate(new BigDecimal("4.45"));
+		o.updateDetails();
+		o.setOrderNumber(orderNumber);
+		return o;
+	}
+
 	@Test
 	public void testExportOrders() {
 
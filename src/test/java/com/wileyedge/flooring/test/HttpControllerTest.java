@@ -0,0 +1,116 @@
+package com.wileyedge.flooring.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wileyedge.flooring.controller.HttpController;
+import com.wileyedge.flooring.controller.OrderJson;
+import com.wileyedge.flooring.dao.Dao;
+import com.wileyedge.flooring.service.Service;
+
+public class HttpControllerTest {
+
+	Path root;
+	HttpController controller;
+	HttpClient client = HttpClient.newHttpClient();
+
+	@Before
+	public void setUp() throws Exception {
+		// a store of its own so nothing is left behind
+		root = Files.createTempDirectory("http");
+		Path data = Files.createDirectories(root.resolve("Data"));
+		Files.createDirectories(root.resolve("Orders"));
+		Files.copy(Paths.get("res", "Test", "Data", "Products.txt"), data.resolve("Products.txt"));
+		Files.copy(Paths.get("res", "Test", "Data", "Taxes.txt"), data.resolve("Taxes.txt"));
+		Dao dao = new Dao();
+		dao.setTestFiles(root.resolve("Orders").toString(), data.resolve("Products.txt").toString(),
+				data.resolve("Taxes.txt").toString(), root.resolve("DataExport.txt").toString());
+		dao.setJournalling(false);
+
+		Service service = new Service(dao);
+		service.initialise();
+		controller = new HttpController(service);
+		controller.start(0);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		controller.stop();
+		try (Stream<Path> files = Files.walk(root)) {
+			files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+		}
+	}
+
+	@Test
+	public void testOrderLifecycle() throws Exception {
+		String order = "{\"orderDate\":\"2099-01-01\",\"customerName\":\"Ada\",\"state\":\"TX\","
+				+ "\"productType\":\"Carpet\",\"area\":100}";
+
+		// a quote is priced but not saved
+		HttpResponse<String> quote = send("POST", "/quote", order);
+		assertEquals(200, quote.statusCode());
+		assertEquals("225.00", OrderJson.parseObject(quote.body()).get("materialCost"));
+		assertEquals(404, send("GET", "/orders?date=2099-01-01", null).statusCode());
+
+		HttpResponse<String> added = send("POST", "/orders", order);
+		assertEquals(201, added.statusCode());
+		String number = OrderJson.parseObject(added.body()).get("orderNumber");
+		assertTrue(added.headers().firstValue("Location").get().startsWith("/orders/" + number));
+
+		HttpResponse<String> found = send("GET", "/orders/" + number, null);
+		assertEquals(200, found.statusCode());
+		assertEquals("Ada", OrderJson.parseObject(found.body()).get("customerName"));
+		assertTrue(send("GET", "/orders?date=2099-01-01", null).body().contains("\"orderNumber\":" + number));
+		String range = send("GET", "/orders?from=2099-01-01&to=2099-01-31&state=TX&limit=10", null).body();
+		assertTrue(range.contains("\"orderNumber\":" + number));
+		assertTrue(range.endsWith("\"next\":null}"));
+
+		// only the fields sent change
+		HttpResponse<String> edited = send("PUT", "/orders/" + number + "?date=2099-01-01", "{\"area\":\"200\"}");
+		assertEquals(200, edited.statusCode());
+		Map<String, String> fields = OrderJson.parseObject(edited.body());
+		assertEquals("Ada", fields.get("customerName"));
+		assertEquals("450.00", fields.get("materialCost"));
+
+		assertEquals(204, send("DELETE", "/orders/" + number, null).statusCode());
+		assertEquals(404, send("GET", "/orders/" + number, null).statusCode());
+	}
+
+	@Test
+	public void testBadRequests() throws Exception {
+		// every failed field is reported
+		HttpResponse<String> invalid = send("POST", "/orders",
+				"{\"orderDate\":\"2000-01-01\",\"customerName\":\"Bad_Name\",\"state\":\"ZZ\","
+						+ "\"productType\":\"Carpet\",\"area\":10}");
+		assertEquals(400, invalid.statusCode());
+		assertEquals(4, invalid.body().split("\",\"").length);
+
+		assertEquals(400, send("POST", "/orders", "not json").statusCode());
+		assertEquals(400, send("GET", "/orders?date=tomorrow", null).statusCode());
+		assertEquals(404, send("GET", "/orders/abc", null).statusCode());
+		assertEquals(405, send("DELETE", "/quote", null).statusCode());
+	}
+
+	private HttpResponse<String> send(String method, String path, String body) throws Exception {
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + controller.getPort() + path))
+				.method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+						: HttpRequest.BodyPublishers.ofString(body));
+		return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+}
@@ -0,0 +1,161 @@
+package com.wileyedge.flooring.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.wileyedge.flooring.model.Order;
+import com.wileyedge.flooring.model.OrderTable;
+import com.wileyedge.flooring.model.Product;
+import com.wileyedge.flooring.model.StringDictionary;
+
+public class OrderTest {
+
+	private static final BigDecimal HUNDRED = new BigDecimal("100");
+
+	// the fixed point pricing has to match the BigDecimal formulas to the cent
+	@Test
+	public void testUpdateDetailsMatchesBigDecimal() {
+		Random random = new Random(9);
+		for (int i = 0; i < 100000; i++) {
+			// mostly two decimal places, some with more to cover the fallback
+			int scale = i % 10 == 0 ? 3 : 2;
+			BigDecimal area = BigDecimal.valueOf(random.nextInt(10000000), scale);
+			BigDecimal cost = BigDecimal.valueOf(random.nextInt(100000), 2);
+			BigDecimal labourCost = BigDecimal.valueOf(random.nextInt(100000), scale);
+			BigDecimal taxRate = BigDecimal.valueOf(random.nextInt(5000), 2);
+
+			Order o = new Order(LocalDate.of(2030, 1, 1), "Test", "TX", "Wood", area);
+			o.setProductInfo(new Product("Wood", cost, labourCost));
+			o.setTaxRate(taxRate);
+			o.updateDetails();
+
+			BigDecimal material = area.multiply(cost).setScale(2, RoundingMode.HALF_UP);
+			BigDecimal labour = area.multiply(labourCost).setScale(2, RoundingMode.HALF_UP);
+			BigDecimal tax = material.add(labour).multiply(taxRate.divide(HUNDRED)).setScale(2, RoundingMode.HALF_UP);
+			BigDecimal total = material.add(labour).add(tax).setScale(2);
+
+			assertEquals(material, o.getMaterialCost());
+			assertEquals(labour, o.getLabourCost());
+			assertEquals(tax, o.getTax());
+			assertEquals(total, o.getTotal());
+		}
+	}
+
+	// halves round up, the case most likely to differ
+	@Test
+	public void testUpdateDetailsRoundsHalfUp() {
+		Order o = new Order(LocalDate.of(2030, 1, 1), "Test", "TX", "Wood", new BigDecimal("0.50"));
+		o.setProductInfo(new Product("Wood", new BigDecimal("0.01"), new BigDecimal("0.03")));
+		o.setTaxRate(new BigDecimal("12.50"));
+		o.updateDetails();
+
+		assertEquals(new BigDecimal("0.01"), o.getMaterialCost());
+		assertEquals(new BigDecimal("0.02"), o.getLabourCost());
+		assertEquals(new BigDecimal("0.00"), o.getTax());
+		assertEquals(new BigDecimal("0.03"), o.getTotal());
+		assertEquals("0,Test,TX,12.50,Wood,0.50,0.01,0.03,0.01,0.02,0.00,0.03", o.formatOrder());
+	}
+
+	// orders read back from a table should format exactly as they went in
+	@Test
+	public void testOrderTableRoundTrip() {
+		LocalDate date = LocalDate.of(2030, 1, 1);
+		OrderTable table = new OrderTable(date, new StringDictionary(), new StringDictionary(), 1);
+
+		Order plain = new Order(date, 1, "Ada", "TX", new BigDecimal("4.45"), "Wood", new BigDecimal("100"),
+				new BigDecimal("5.15"), new BigDecimal("4.75"), new BigDecimal("515.00"), new BigDecimal("475.00"),
+				new BigDecimal("44.06"), new BigDecimal("1034.06"));
+		Order huge = new Order(date, 2, "Bob", "CA", null, "Tile", new BigDecimal("1E+40"),
+				new BigDecimal("0.1234567890123456789012"), new BigDecimal("3.50"), null, null, null, null);
+		Order third = new Order(date, 3, "Cy", "TX", new BigDecimal("4.45"), "Wood", new BigDecimal("250.00"),
+				new BigDecimal("5.15"), new BigDecimal("4.75"), new BigDecimal("1287.50"), new BigDecimal("1187.50"),
+				new BigDecimal("110.14"), new BigDecimal("2585.14"));
+		table.add(plain);
+		table.add(huge);
+		table.add(third);
+
+		assertEquals(3, table.size());
+		assertEquals(plain.formatOrder(), table.get(0).formatOrder());
+		assertEquals(huge.formatOrder(), table.get(1).formatOrder());
+		assertNull(table.get(1).getTaxRate());
+
+		table.remove(table.indexOf(1));
+		assertEquals(2, table.size());
+		assertEquals(-1, table.indexOf(1));
+		assertEquals(third.formatOrder(), table.get(table.indexOf(3)).formatOrder());
+
+		table.set(table.indexOf(2), plain);
+		assertEquals(plain.formatOrder(), table.get(table.indexOf(1)).formatOrder());
+		assertEquals(-1, table.indexOf(2));
+
+		// removing most of a bigger table compacts it, order is kept
+		for (int i = 10; i < 110; i++) {
+			table.add(new Order(date, i, "C" + i, "TX", null, "Wood", null, null, null, null, null, null, null));
+		}
+		for (int i = 10; i < 110; i += 2) {
+			table.remove(table.indexOf(i));
+		}
+		assertEquals(52, table.size());
+		List<Order> orders = table.asList();
+		assertEquals(52, orders.size());
+		assertEquals(1, orders.get(0).getOrderNumber());
+		assertEquals(3, orders.get(1).getOrderNumber());
+		assertEquals(11, orders.get(2).getOrderNumber());
+		assertEquals(109, orders.get(51).getOrderNumber());
+		assertEquals("C51", table.get(table.indexOf(51)).getCustomerName());
+	}
+
+	// a copy shares the rows it has not changed, changes to either table
+	// stay out of the other
+	@Test
+	public void testOrderTableCopy() {
+		LocalDate date = LocalDate.of(2030, 1, 1);
+		OrderTable table = new OrderTable(date, new StringDictionary(), new StringDictionary());
+		for (int i = 1; i <= 1000; i++) {
+			table.add(new Order(date, i, "C" + i, "TX", null, "Wood", new BigDecimal(i), null, null, null, null,
+					null, null));
+		}
+
+		OrderTable copy = table.copy();
+		copy.set(copy.indexOf(500), new Order(date, 2000, "Edited", "CA", null, "Tile", new BigDecimal("1E+40"),
+				null, null, null, null, null, null));
+		copy.remove(copy.indexOf(10));
+		copy.add(new Order(date, 1001, "New", "TX", null, "Wood", null, null, null, null, null, null, null));
+
+		assertEquals(1000, table.size());
+		assertEquals("C500", table.get(table.indexOf(500)).getCustomerName());
+		assertEquals(-1, table.indexOf(2000));
+		assertEquals("C10", table.get(table.indexOf(10)).getCustomerName());
+		assertEquals(-1, table.indexOf(1001));
+
+		assertEquals(1000, copy.size());
+		assertEquals(-1, copy.indexOf(500));
+		assertEquals(new BigDecimal("1E+40"), copy.get(copy.indexOf(2000)).getArea());
+		assertEquals(-1, copy.indexOf(10));
+		assertEquals("New", copy.get(copy.indexOf(1001)).getCustomerName());
+
+		// the table copied from can still be changed without reaching the copy
+		table.remove(table.indexOf(1));
+		assertEquals("C1", copy.get(copy.indexOf(1)).getCustomerName());
+
+		// removing most of the copy compacts it
+		for (int i = 2; i <= 900; i++) {
+			if (i != 10 && i != 500) {
+				copy.remove(copy.indexOf(i));
+			}
+		}
+		assertEquals(103, copy.size());
+		assertEquals(1, copy.asList().get(0).getOrderNumber());
+		assertEquals(901, copy.get(copy.indexOf(901)).getOrderNumber());
+		assertEquals(999, table.size());
+	}
+
+}
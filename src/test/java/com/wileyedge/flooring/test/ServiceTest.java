@@ -4,16 +4,36 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.After;
 import org.junit.Before;
@@ -28,9 +48,20 @@ import com.wileyedge.flooring.exceptions.InvalidStateException;
 import com.wileyedge.flooring.exceptions.NoOrdersForDateException;
 import com.wileyedge.flooring.exceptions.OrderNotFoundException;
 import com.wileyedge.flooring.model.Order;
+import com.wileyedge.flooring.model.OrderTable;
 import com.wileyedge.flooring.model.Product;
+import com.wileyedge.flooring.model.StringDictionary;
 import com.wileyedge.flooring.model.TaxInfo;
+import com.wileyedge.flooring.service.ImportResult;
+import com.wileyedge.flooring.service.OrderPage;
+import com.wileyedge.flooring.service.OrderQuery;
+import com.wileyedge.flooring.service.OrderValidator.Field;
+import com.wileyedge.flooring.service.PartitionCache;
+import com.wileyedge.flooring.service.PartitionSnapshot;
+import com.wileyedge.flooring.service.RepriceReport;
+import com.wileyedge.flooring.service.Rollup;
 import com.wileyedge.flooring.service.Service;
+import com.wileyedge.flooring.service.ValidationReport;
 
 public class ServiceTest {
 	Service service;
@@ -87,7 +118,7 @@ public class ServiceTest {
 	}
 
 	@Test
-	public void testAddAndRemoveOrder() {
+	public void testAddAndRemoveOrder() throws OrderNotFoundException {
 
 		// new order date
 		LocalDate date = LocalDate.of(2013, 6, 2);
@@ -120,7 +151,7 @@ public class ServiceTest {
 	}
 
 	@Test
-	public void testEditOrder() {
+	public void testEditOrder() throws OrderNotFoundException {
 
 		// edit the order
 
@@ -150,6 +181,44 @@ public class ServiceTest {
 		orders = service.getOrdersByDate(date);
 		// last order should be removed so should be size 0
 		assertEquals(orders.size(), 0);
+
+		// a removed order can't be edited or removed again
+		try {
+			service.editOrder(testOrder);
+			fail();
+		} catch (OrderNotFoundException e) {
+		}
+		try {
+			service.removeOrder(testOrder);
+			fail();
+		} catch (OrderNotFoundException e) {
+		}
+	}
+
+	@Test
+	public void testLazyLoading() throws Exception {
+
+		// reload with only one date allowed in memory
+		Dao dao = new Dao();
+		dao.setTestFiles("res\\Test\\Orders", "res\\Test\\Data\\Products.txt", "res\\Test\\Data\\Taxes.txt",
+				"res\\Test\\Backup\\DataExport.txt");
+		service = new Service(dao);
+		service.setLazyLoading(true, 1);
+		service.initialise();
+
+		// partitions load when first used
+		LocalDate date = LocalDate.of(2013, 6, 1);
+		assertTrue(service.checkOrderDateExists(date));
+		assertEquals(1, service.getOrdersByDate(date).size());
+		assertNotNull(service.getOrder(date, 1));
+
+		// loading another date evicts the first, it should still be readable
+		assertNotNull(service.getOrdersByDate(LocalDate.of(2013, 6, 2)));
+		assertEquals(1, service.getOrdersByDate(date).size());
+
+		// dates without a file are not found
+		assertNull(service.getOrdersByDate(LocalDate.of(3000, 6, 1)));
+
 	}
 
 	@Test
@@ -336,6 +405,505 @@ public class ServiceTest {
 		
 	}
 	
+	@Test
+	public void testImportOrders() throws Exception {
+
+		// import into a copy of the test files so nothing is left behind
+		Path root = Files.createTempDirectory("import");
+		Dao dao = tempDao(root);
+		service = new Service(dao);
+		service.initialise();
+
+		String csv = "OrderDate,CustomerName,State,ProductType,Area\n" + "01-01-2099,Lovelace, Ada,TX,Carpet,120.50\n"
+				+ "01-02-2099,Bob,tx,carpet,200\n" + "01-01-2099,Bad_Name,TX,Carpet,200\n" + "not an order\n"
+				+ "01-01-2000,Old,CA,Wood,50\n";
+		try {
+			ImportResult result = service.importOrders(new StringReader(csv));
+
+			assertEquals(2, result.getImported());
+			assertEquals(3, result.getRejected());
+			assertEquals(1, result.getFirstOrderNumber());
+			assertEquals(6, result.getErrors().size());
+			assertTrue(result.getErrors().get(0).startsWith("Line 4: "));
+			assertTrue(result.getErrors().get(1).startsWith("Line 5: "));
+
+			// priced like configureOrder and saved to their dates
+			Order ada = service.getOrder(1);
+			assertEquals("Lovelace, Ada", ada.getCustomerName());
+			Order bob = service.getOrderToDelete(LocalDate.of(2099, 1, 2), 2);
+			assertEquals("TX", bob.getState());
+			assertEquals(new BigDecimal("870.00"), bob.getMaterialCost().add(bob.getLabourCost()).setScale(2));
+			assertEquals(1, dao.getOrders(LocalDate.of(2099, 1, 1)).size());
+			assertEquals(1, dao.getOrders(LocalDate.of(2099, 1, 2)).size());
+		} finally {
+			deleteFolder(root);
+		}
+	}
+
+	@Test
+	public void testRepriceFutureOrders() throws Exception {
+
+		Path root = Files.createTempDirectory("reprice");
+		Dao dao = tempDao(root);
+		service = new Service(dao);
+		service.initialise();
+
+		try {
+			service.importOrders(new StringReader("01-01-2099,Ada,TX,Carpet,100\n01-02-2099,Bob,TX,Carpet,200\n"));
+
+			// nothing to do while the files are unchanged
+			assertTrue(service.repriceFutureOrders().getChanges().isEmpty());
+
+			// carpet goes up, both orders should be repriced and saved
+			Files.write(root.resolve("Data").resolve("Products.txt"),
+					"ProductType,CostPerSquareFoot,LaborCostPerSquareFoot\r\nCarpet,3.00,2.10".getBytes());
+			RepriceReport report = service.repriceFutureOrders();
+
+			assertEquals(2, report.getChanges().size());
+			assertEquals(2, report.getDatesWritten().size());
+			RepriceReport.Change change = report.getChanges().get(0);
+			assertEquals(new BigDecimal("225.00"), change.getBefore().getMaterialCost());
+			assertEquals(new BigDecimal("300.00"), change.getAfter().getMaterialCost());
+			assertTrue(change.getDifferences().contains("Cost Per Square Foot: 2.25 -> 3.00"));
+
+			assertEquals(new BigDecimal("3.00"), service.getOrdersByDate(LocalDate.of(2099, 1, 1)).get(0).getCostPerSquareFoot());
+			assertEquals(new BigDecimal("600.00"),
+					dao.getOrders(LocalDate.of(2099, 1, 2)).get(0).getMaterialCost());
+		} finally {
+			deleteFolder(root);
+		}
+	}
+
+	@Test
+	public void testRangeQueries() throws Exception {
+
+		Path root = Files.createTempDirectory("range");
+		Dao dao = twoStateDao(root);
+
+		try {
+
+			// what a walk over every date finds
+			LocalDate from = LocalDate.of(2099, 1, 15);
+			LocalDate to = LocalDate.of(2099, 2, 15);
+			List<Integer> expected = new ArrayList<>();
+			for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+				List<Order> orders = service.getOrdersByDate(d);
+				orders.sort(Comparator.comparingInt(Order::getOrderNumber));
+				for (Order o : orders) {
+					if (o.getState().equals("WA") && o.getProductType().equals("Wood")) {
+						expected.add(o.getOrderNumber());
+					}
+				}
+			}
+			assertFalse(expected.isEmpty());
+
+			OrderQuery query = OrderQuery.between(from, to).state("wa").productType("wood");
+			assertEquals(expected, numbers(service.streamOrders(query)));
+			assertEquals(expected, numbers(service.streamOrders(query.parallel())));
+			assertEquals(1, service.streamOrders(query.where(o -> o.getOrderNumber() == expected.get(0))).count());
+			assertEquals(0, service.streamOrders(query.state("ZZ")).count());
+			assertEquals(300, service.streamOrders(OrderQuery.all()).count());
+
+			// pages of 4 add up to the whole result, a removal between pages
+			// does not shift the next one
+			List<Integer> paged = new ArrayList<>();
+			OrderPage page = service.getOrderPage(query, null, 4);
+			paged.addAll(numbers(page.getOrders().stream()));
+			service.removeOrder(page.getOrders().get(0));
+			while (page.hasMore()) {
+				page = service.getOrderPage(query, page.getNextCursor(), 4);
+				assertTrue(page.getOrders().size() <= 4);
+				paged.addAll(numbers(page.getOrders().stream()));
+			}
+			assertEquals(expected, paged);
+
+			// lazy loading walks the same dates from file
+			Service lazy = new Service(dao);
+			lazy.setLazyLoading(true, 4);
+			lazy.initialise();
+			assertEquals(expected.subList(1, expected.size()), numbers(lazy.streamOrders(query)));
+		} finally {
+			deleteFolder(root);
+		}
+	}
+
+	@Test
+	public void testRollups() throws Exception {
+
+		Path root = Files.createTempDirectory("rollups");
+		Dao dao = twoStateDao(root);
+
+		try {
+			YearMonth february = YearMonth.of(2099, 2);
+			assertRollupsMatch(service, february);
+
+			// each change moves the totals it falls in
+			Order edited = service.getOrdersByDate(LocalDate.of(2099, 2, 3)).get(0);
+			service.configureOrder(edited, edited.getCustomerName(), "WA",
+					service.getProducts().get(1), new BigDecimal("1000"));
+			service.editOrder(edited);
+			service.removeOrder(service.getOrdersByDate(LocalDate.of(2099, 2, 10)).get(0));
+			Order added = new Order(LocalDate.of(2099, 2, 28), "New", "WA", "Wood", new BigDecimal("500"));
+			service.addOrder(service.configureOrder(added));
+			assertRollupsMatch(service, february);
+
+			Rollup day = service.getRollup(LocalDate.of(2099, 2, 28), "WA", "Wood");
+			assertTrue(day.getOrderCount() >= 1);
+			assertEquals(0, service.getRollup(LocalDate.of(2099, 2, 28), "ZZ", null).getOrderCount());
+			assertEquals(300, service.getRollup((YearMonth) null, null, null).getOrderCount());
+
+			// lazy startup reads no order file, a month's totals only read
+			// that month's files and come out the same
+			Set<LocalDate> read = ConcurrentHashMap.newKeySet();
+			Dao counting = new Dao() {
+				@Override
+				public List<Order> getOrders(LocalDate date) {
+					read.add(date);
+					return super.getOrders(date);
+				}
+			};
+			counting.setTestFiles(root.resolve("Orders").toString(),
+					root.resolve("Data").resolve("Products.txt").toString(),
+					root.resolve("Data").resolve("Taxes.txt").toString(), root.resolve("DataExport.txt").toString());
+			counting.setJournalling(false);
+			Service lazy = new Service(counting);
+			lazy.setLazyLoading(true, 4);
+			lazy.initialise();
+			assertTrue(read.isEmpty());
+			assertEquals(service.getRollup(february, "WA", null).getTotal(),
+					lazy.getRollup(february, "WA", null).getTotal());
+			assertFalse(read.isEmpty());
+			assertTrue(read.stream().allMatch(date -> YearMonth.from(date).equals(february)));
+			assertRollupsMatch(lazy, february);
+			assertEquals(service.getRollupsByProductType(null).get("Wood").getTotal(),
+					lazy.getRollupsByProductType(null).get("Wood").getTotal());
+
+			// an order is found by number on a date not loaded yet
+			Order january = service.getOrdersByDate(LocalDate.of(2099, 1, 5)).get(0);
+			Service fresh = new Service(dao);
+			fresh.setLazyLoading(true, 4);
+			fresh.initialise();
+			assertEquals(january.getOrderDate(), fresh.getOrder(january.getOrderNumber()).getOrderDate());
+			assertEquals(january.getCustomerName(),
+					fresh.getOrder(january.getOrderDate(), january.getOrderNumber()).getCustomerName());
+		} finally {
+			deleteFolder(root);
+		}
+	}
+
+	// the month's totals against adding up every order
+	private static void assertRollupsMatch(Service service, YearMonth month) {
+		OrderQuery query = OrderQuery.between(month.atDay(1), month.atEndOfMonth());
+		Rollup all = service.getRollup(month, null, null);
+		assertEquals(service.streamOrders(query).count(), all.getOrderCount());
+		assertEquals(0, sum(service.streamOrders(query).map(Order::getTotal)).compareTo(all.getTotal()));
+		assertEquals(0, sum(service.streamOrders(query).map(Order::getArea)).compareTo(all.getArea()));
+
+		Rollup wa = service.getRollupsByState(month).get("WA");
+		assertEquals(0, sum(service.streamOrders(query.state("WA")).map(Order::getTax)).compareTo(wa.getTax()));
+		Rollup waWood = service.getRollup(month, "wa", "wood");
+		assertEquals(0, sum(service.streamOrders(query.state("WA").productType("Wood")).map(Order::getLabourCost))
+				.compareTo(waWood.getLabourCost()));
+	}
+
+	private static BigDecimal sum(Stream<BigDecimal> values) {
+		return values.reduce(BigDecimal.ZERO, BigDecimal::add);
+	}
+
+	// a store with TX and WA, Carpet and Wood, and 300 orders over 90 days
+	// from 2099-01-01, the service is set up on it
+	private Dao twoStateDao(Path root) throws IOException {
+		Dao dao = tempDao(root);
+		Files.write(root.resolve("Data").resolve("Taxes.txt"),
+				"State,StateName,TaxRate\r\nTX,Texas,4.45\r\nWA,Washington,9.25".getBytes());
+		Files.write(root.resolve("Data").resolve("Products.txt"),
+				"ProductType,CostPerSquareFoot,LaborCostPerSquareFoot\r\nCarpet,2.25,2.10\r\nWood,5.15,4.75"
+						.getBytes());
+		service = new Service(dao);
+		service.initialise();
+
+		StringBuilder lines = new StringBuilder();
+		LocalDate first = LocalDate.of(2099, 1, 1);
+		for (int i = 0; i < 300; i++) {
+			LocalDate date = first.plusDays(i % 90);
+			lines.append(String.format("%02d-%02d-%d,Customer %d,%s,%s,%d%n", date.getMonthValue(),
+					date.getDayOfMonth(), date.getYear(), i, i % 3 == 0 ? "WA" : "TX",
+					i % 2 == 0 ? "Wood" : "Carpet", 100 + i));
+		}
+		service.importOrders(new StringReader(lines.toString()));
+		return dao;
+	}
+
+	private static List<Integer> numbers(Stream<Order> orders) {
+		return orders.map(Order::getOrderNumber).collect(Collectors.toList());
+	}
+
+	// a snapshot is never changed by later puts, copies or evictions
+	@Test
+	public void testPartitionSnapshots() {
+		StringDictionary states = new StringDictionary();
+		StringDictionary productTypes = new StringDictionary();
+		LocalDate jan = LocalDate.of(2099, 1, 31);
+		LocalDate feb = LocalDate.of(2099, 2, 1);
+		LocalDate dec = LocalDate.of(2098, 12, 31);
+		OrderTable table = new OrderTable(jan, states, productTypes);
+		table.add(new Order(jan, 1, "Ada", "TX", null, "Wood", null, null, null, null, null, null, null));
+
+		PartitionCache cache = new PartitionCache(2);
+		cache.put(jan, table);
+		cache.markDirty(jan);
+		PartitionSnapshot before = cache.snapshot();
+
+		// a change is made to a copy and published as a new version
+		OrderTable changed = before.get(jan).copy();
+		changed.add(new Order(jan, 2, "Bob", "TX", null, "Wood", null, null, null, null, null, null, null));
+		changed.remove(changed.indexOf(1));
+		cache.put(jan, changed);
+		cache.put(feb, new OrderTable(feb, states, productTypes));
+		cache.put(dec, new OrderTable(dec, states, productTypes));
+
+		assertEquals(1, before.size());
+		assertEquals(1, before.get(jan).size());
+		assertEquals(1, before.get(jan).asList().get(0).getOrderNumber());
+		assertEquals(1, cache.get(jan).size());
+		assertEquals(2, cache.get(jan).asList().get(0).getOrderNumber());
+
+		// the least recently used clean date went, the dirty one stayed
+		PartitionSnapshot after = cache.snapshot();
+		assertTrue(after.getVersion() > before.getVersion());
+		assertEquals(2, after.size());
+		assertNull(after.get(feb));
+		assertEquals(List.of(dec, jan), after.getDates());
+	}
+
+	@Test
+	public void testConcurrentAddAndRemove() throws Exception {
+
+		Path root = Files.createTempDirectory("concurrent");
+		Dao dao = tempDao(root);
+		service = new Service(dao);
+		service.initialise();
+
+		// writers share a few dates so most of them contend for the same
+		// locks, readers walk the same dates the whole time
+		int writers = 8;
+		int ordersEach = 200;
+		LocalDate[] dates = { LocalDate.of(2099, 3, 1), LocalDate.of(2099, 3, 2), LocalDate.of(2099, 3, 3) };
+		ExecutorService pool = Executors.newFixedThreadPool(writers + 2);
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicBoolean writing = new AtomicBoolean(true);
+		List<Future<List<Integer>>> kept = new ArrayList<>();
+		List<Future<?>> reads = new ArrayList<>();
+
+		try {
+			for (int w = 0; w < writers; w++) {
+				int writer = w;
+				kept.add(pool.submit(() -> {
+					start.await();
+					List<Integer> numbers = new ArrayList<>();
+					for (int i = 0; i < ordersEach; i++) {
+						Order o = new Order(dates[(writer + i) % dates.length], "Writer " + writer, "TX", "Carpet",
+								new BigDecimal("150"));
+						service.configureOrder(o);
+						numbers.add(service.addOrder(o));
+						// remove every fourth order again
+						if (i % 4 == 3) {
+							service.removeOrder(service.getOrderToDelete(o.getOrderDate(), o.getOrderNumber()));
+							numbers.remove(numbers.size() - 1);
+						}
+					}
+					return numbers;
+				}));
+			}
+			for (int r = 0; r < 2; r++) {
+				reads.add(pool.submit(() -> {
+					start.await();
+					while (writing.get()) {
+						for (LocalDate date : dates) {
+							List<Order> orders = service.getOrdersByDate(date);
+							if (orders != null) {
+								orders.forEach(o -> assertEquals(date, o.getOrderDate()));
+							}
+						}
+					}
+					return null;
+				}));
+			}
+
+			start.countDown();
+			Set<Integer> expected = new HashSet<>();
+			for (Future<List<Integer>> f : kept) {
+				for (int n : f.get(60, TimeUnit.SECONDS)) {
+					assertTrue("order number " + n + " given out twice", expected.add(n));
+				}
+			}
+			writing.set(false);
+			for (Future<?> f : reads) {
+				f.get(60, TimeUnit.SECONDS);
+			}
+			assertEquals(writers * ordersEach * 3 / 4, expected.size());
+
+			// nothing lost in memory or on file
+			Set<Integer> inMemory = new HashSet<>();
+			Set<Integer> onFile = new HashSet<>();
+			for (LocalDate date : dates) {
+				service.getOrdersByDate(date).forEach(o -> inMemory.add(o.getOrderNumber()));
+				dao.getOrders(date).forEach(o -> onFile.add(o.getOrderNumber()));
+			}
+			assertEquals(expected, inMemory);
+			assertEquals(expected, onFile);
+		} finally {
+			pool.shutdownNow();
+			deleteFolder(root);
+		}
+	}
+
+	@Test
+	public void testWriteBehind() throws Exception {
+
+		// count the whole-date saves the writer makes
+		Map<LocalDate, Integer> saves = new ConcurrentHashMap<>();
+		Path root = Files.createTempDirectory("write-behind");
+		Dao dao = tempDao(root, new Dao() {
+			@Override
+			public boolean saveChanges(LocalDate date, List<Order> orders) {
+				saves.merge(date, 1, Integer::sum);
+				return super.saveChanges(date, orders);
+			}
+		});
+		service = new Service(dao);
+		// an interval long enough that only flush and a full queue write
+		service.setWriteBehind(60_000, 8);
+		service.initialise();
+		LocalDate date = LocalDate.of(2099, 5, 1);
+
+		try {
+			// a burst of changes to one date is saved once
+			List<Order> added = new ArrayList<>();
+			for (int i = 0; i < 5; i++) {
+				Order o = service.configureOrder(new Order(date, "Burst " + i, "TX", "Carpet", new BigDecimal("100")));
+				service.addOrder(o);
+				added.add(o);
+			}
+			added.get(0).setCustomerName("Edited");
+			service.editOrder(added.get(0));
+			service.removeOrder(added.get(4));
+			assertNull(dao.getOrders(date));
+
+			assertTrue(service.flush());
+			assertEquals(Integer.valueOf(1), saves.get(date));
+			List<Order> onFile = dao.getOrders(date);
+			assertEquals(4, onFile.size());
+			assertEquals("Edited", onFile.get(0).getCustomerName());
+
+			// a full queue makes the writer save early rather than drop changes
+			for (int i = 0; i < 20; i++) {
+				service.addOrder(
+						service.configureOrder(new Order(date, "Queue " + i, "TX", "Carpet", new BigDecimal("100"))));
+			}
+			assertTrue(saves.get(date) >= 2);
+
+			// shutting down saves everything still waiting
+			assertTrue(service.shutdown());
+			assertEquals(24, dao.getOrders(date).size());
+		} finally {
+			service.shutdown();
+			deleteFolder(root);
+		}
+	}
+
+	// a dao over a copy of the test product and tax files with no orders
+	private static Dao tempDao(Path root) throws IOException {
+		return tempDao(root, new Dao());
+	}
+
+	private static Dao tempDao(Path root, Dao dao) throws IOException {
+		Path data = Files.createDirectories(root.resolve("Data"));
+		Files.createDirectories(root.resolve("Orders"));
+		Files.copy(Paths.get("res", "Test", "Data", "Products.txt"), data.resolve("Products.txt"));
+		Files.copy(Paths.get("res", "Test", "Data", "Taxes.txt"), data.resolve("Taxes.txt"));
+		dao.setTestFiles(root.resolve("Orders").toString(), data.resolve("Products.txt").toString(),
+				data.resolve("Taxes.txt").toString(), root.resolve("DataExport.txt").toString());
+		dao.setJournalling(false);
+		return dao;
+	}
+
+	private static void deleteFolder(Path root) throws IOException {
+		try (Stream<Path> files = Files.walk(root)) {
+			files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+		}
+	}
+
+	@Test
+	public void testValidateOrders() {
+
+		LocalDate future = LocalDate.now().plusDays(1);
+		List<Order> orders = new ArrayList<>();
+		orders.add(new Order(future, "Good Name", "TX", "Carpet", new BigDecimal("100.00")));
+		orders.add(new Order(LocalDate.of(2000, 1, 1), "Bad_Name", "CA", "Wood", new BigDecimal("99.99")));
+		orders.add(new Order(future, "", "tx", "Tile", null));
+
+		ValidationReport report = service.validateOrders(orders);
+
+		assertEquals(3, report.size());
+		assertEquals(2, report.getInvalidCount());
+		assertTrue(report.isValid(0));
+		assertEquals(EnumSet.allOf(Field.class), report.getFailedFields(1));
+		assertEquals(EnumSet.of(Field.CUSTOMER_NAME, Field.PRODUCT_TYPE, Field.AREA), report.getFailedFields(2));
+		assertEquals(8, report.getErrors().size());
+		assertEquals(Field.ORDER_DATE, report.getErrors().get(0).getField());
+		assertEquals(1, report.getErrors().get(0).getIndex());
+	}
+
+	@Test
+	public void testReferenceData() throws Exception {
+
+		// lookups ignore case and orders get the state as the file spells it
+		assertTrue(service.validateState("tx"));
+		Order order = new Order(LocalDate.of(2030, 1, 1), "Name", "tx", "carpet", new BigDecimal("100"));
+		service.configureOrder(order);
+		assertEquals("TX", order.getState());
+		assertEquals("Carpet", order.getProductType());
+		assertEquals(new BigDecimal("4.45"), order.getTaxRate());
+
+		// a reload swaps in a new table with the same data
+		List<TaxInfo> before = service.getTaxes();
+		assertTrue(service.reloadReferenceData());
+		assertNotSame(before, service.getTaxes());
+		assertEquals(before.size(), service.getTaxes().size());
+	}
+
+	@Test
+	public void testGetOrderByNumber() throws Exception {
+
+		// orders can be found from their number alone
+		assertEquals(LocalDate.of(2013, 6, 1), service.getOrder(1).getOrderDate());
+
+		LocalDate date = LocalDate.of(2013, 6, 2);
+		Order testOrder = new Order(date, "Test Order", "CA", "Carpet", new BigDecimal("100.00"));
+		testOrder.setProductInfo(new Product("Carpet", new BigDecimal("2.25"), new BigDecimal("2.10")));
+		testOrder.setTaxRate(new BigDecimal("4.45"));
+		testOrder.updateDetails();
+		int orderNumber = service.addOrder(testOrder);
+
+		assertEquals(date, service.getOrder(orderNumber).getOrderDate());
+		assertEquals("Test Order", service.getOrderToDelete(date, orderNumber).getCustomerName());
+
+		// the wrong date doesnt find it
+		try {
+			service.getOrder(LocalDate.of(2013, 6, 1), orderNumber);
+			fail();
+		} catch (OrderNotFoundException e) {
+		}
+
+		service.removeOrder(testOrder);
+		try {
+			service.getOrder(orderNumber);
+			fail();
+		} catch (OrderNotFoundException e) {
+		}
+	}
+
 	public void testGetOrderToDelete() {
 		// date of first order
 		LocalDate date = LocalDate.of(2013, 6, 1);